@@ -1,6 +1,8 @@
 // src/main/java/com/exercici0601/Agent.java
 package com.exercici0601;
 
+import org.json.JSONObject;
+
 public class Agent {
     private int number;
     private String name;
@@ -11,6 +13,20 @@ public class Agent {
     private String category;
     private String image;
 
+    // Crea un agent a partir d'un registre de valorant.json
+    public static Agent fromJson(JSONObject obj) {
+        Agent agent = new Agent();
+        agent.setNumber(obj.getInt("number"));
+        agent.setName(obj.getString("name"));
+        agent.setType(obj.getString("type"));
+        agent.setAbility(obj.getString("ability"));
+        agent.setHeight(obj.getString("height"));
+        agent.setWeight(obj.getString("weight"));
+        agent.setCategory(obj.getString("category"));
+        agent.setImage(obj.getString("image"));
+        return agent;
+    }
+
     // Getters
     public int getNumber() { 
         return number; 
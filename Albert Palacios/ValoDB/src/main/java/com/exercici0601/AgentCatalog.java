@@ -0,0 +1,169 @@
+// src/main/java/com/exercici0601/AgentCatalog.java
+package com.exercici0601;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class AgentCatalog {
+
+    // Longitud màxima dels n-grames indexats (1, 2 i 3 lletres)
+    private static final int GRAM = 3;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}");
+
+    private final Agent[] agents;                                 // Ordenats per número
+    private final String[] searchText;                            // Nom i habilitat normalitzats de cada agent
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final Map<String, BitSet> byCategory = new HashMap<>();
+    private final Map<String, int[]> grams = new HashMap<>();     // n-grama -> posicions (ordenades) dels agents
+    private final Map<Integer, Agent> byNumber = new HashMap<>();
+
+    // Construeix els índexs un sol cop: després cada cerca només consulta mapes
+    public AgentCatalog(Collection<Agent> source) {
+        agents = source.toArray(new Agent[0]);
+        Arrays.sort(agents, Comparator.comparingInt(Agent::getNumber));
+        searchText = new String[agents.length];
+
+        Map<String, IntList> postings = new HashMap<>();
+        for (int i = 0; i < agents.length; i++) {
+            Agent agent = agents[i];
+            byNumber.put(agent.getNumber(), agent);
+            byType.computeIfAbsent(normalize(agent.getType()), k -> new BitSet()).set(i);
+            byCategory.computeIfAbsent(normalize(agent.getCategory()), k -> new BitSet()).set(i);
+
+            String name = normalize(agent.getName());
+            String ability = normalize(agent.getAbility());
+            searchText[i] = name + '\n' + ability;
+            addGrams(postings, name, i);
+            addGrams(postings, ability, i);
+        }
+        postings.forEach((gram, list) -> grams.put(gram, list.toArray()));
+    }
+
+    public int size() {
+        return agents.length;
+    }
+
+    // Tots els agents, ordenats per número
+    public List<Agent> all() {
+        return List.of(agents);
+    }
+
+    public Agent getByNumber(int number) {
+        return byNumber.get(number);
+    }
+
+    public List<Agent> getByType(String type) {
+        return toList(byType.get(normalize(type)));
+    }
+
+    public List<Agent> getByCategory(String category) {
+        return toList(byCategory.get(normalize(category)));
+    }
+
+    // Agents que contenen el text al nom o a l'habilitat, o que són d'aquest tipus o categoria
+    // (sense distingir majúscules ni accents), ordenats per número
+    public List<Agent> search(String query) {
+        String q = query == null ? "" : normalize(query.trim());
+        if (q.isEmpty()) {
+            return all();
+        }
+
+        BitSet found = new BitSet(agents.length);
+        BitSet type = byType.get(q);
+        if (type != null) {
+            found.or(type);
+        }
+        BitSet category = byCategory.get(q);
+        if (category != null) {
+            found.or(category);
+        }
+
+        if (q.length() <= GRAM) {
+            // Els n-grames curts estan indexats sencers: la llista ja és el resultat
+            int[] matches = grams.get(q);
+            if (matches != null) {
+                for (int i : matches) {
+                    found.set(i);
+                }
+            }
+        } else {
+            // Es parteix del trigrama menys freqüent i es comprova cada candidat
+            int[] candidates = null;
+            for (int start = 0; start + GRAM <= q.length(); start++) {
+                int[] matches = grams.get(q.substring(start, start + GRAM));
+                if (matches == null) {
+                    candidates = null;
+                    break;
+                }
+                if (candidates == null || matches.length < candidates.length) {
+                    candidates = matches;
+                }
+            }
+            if (candidates != null) {
+                for (int i : candidates) {
+                    if (searchText[i].contains(q)) {
+                        found.set(i);
+                    }
+                }
+            }
+        }
+        return toList(found);
+    }
+
+    private List<Agent> toList(BitSet bits) {
+        if (bits == null) {
+            return List.of();
+        }
+        List<Agent> result = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(agents[i]);
+        }
+        return result;
+    }
+
+    private static void addGrams(Map<String, IntList> postings, String text, int index) {
+        for (int start = 0; start < text.length(); start++) {
+            for (int len = 1; len <= GRAM && start + len <= text.length(); len++) {
+                postings.computeIfAbsent(text.substring(start, start + len), k -> new IntList()).add(index);
+            }
+        }
+    }
+
+    // Minúscules i sense accents, per cercar "reyna" o "REYNA" igual
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String plain = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return plain.toLowerCase(Locale.ROOT);
+    }
+
+    // Llista d'enters sense repeticions consecutives (els agents s'afegeixen en ordre)
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
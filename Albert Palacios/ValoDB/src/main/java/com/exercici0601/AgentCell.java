@@ -0,0 +1,47 @@
+// src/main/java/com/exercici0601/AgentCell.java
+package com.exercici0601;
+
+import com.utils.ImageCache;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+
+public final class AgentCell extends ListCell<Agent> {
+
+    // Alçada fixa de cada element (la de subviewCharacters.fxml)
+    public static final double HEIGHT = 55.0;
+
+    // Cada cel·la té el seu element i el reutilitza per a l'agent que toqui mostrar:
+    // la ListView només en crea les que caben a la pantalla
+    private final ControllerItem1 item = ControllerItem1.create();
+    private final Runnable onLastShown; // S'executa quan es mostra l'últim element (per carregar-ne més)
+
+    public AgentCell(Runnable onLastShown) {
+        this.onLastShown = onLastShown;
+        setAlignment(Pos.CENTER);
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+    @Override
+    protected void updateItem(Agent agent, boolean empty) {
+        super.updateItem(agent, empty);
+        if (empty || agent == null) {
+            item.setAgent(null);
+            item.setImage(null);
+            setGraphic(null);
+            return;
+        }
+        item.setTitle(agent.getName());
+        item.setSubtitle(agent.getType());
+        item.setCircleColor(agent.getCategoryColor());
+        item.setAgent(agent);
+
+        // Només es carreguen les imatges de les cel·les visibles (des de la memòria cau)
+        item.setImage(ImageCache.getThumbnail("/assets/" + agent.getImage()));
+        setGraphic(item.getRoot());
+
+        if (onLastShown != null && getIndex() == getListView().getItems().size() - 1) {
+            onLastShown.run();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+// src/main/java/com/exercici0601/AgentDatabase.java
+package com.exercici0601;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class AgentDatabase implements AutoCloseable {
+
+    // Fitxer per defecte: una còpia de treball (no versionada) del pokemons.sqlite que va dins del jar,
+    // així el fitxer del repositori no es modifica mai. Per tornar a començar, n'hi ha prou d'esborrar-la
+    public static final Path DEFAULT_FILE = Paths.get("data", "valodb.sqlite");
+    private static final String BUNDLED_FILE = "/assets/data/pokemons.sqlite";
+
+    private static AgentDatabase shared; // La de l'aplicació (getDefault)
+
+    private static final String COLUMNS = "number, name, type, ability, height, weight, category, image";
+
+    private final BlockingQueue<PooledConnection> pool;
+    private final List<PooledConnection> all = new ArrayList<>();
+
+    // Les taules tenen les mateixes columnes que 'pokemons' (les d'Agent)
+    public AgentDatabase(Path file, int poolSize) throws SQLException {
+        pool = new ArrayBlockingQueue<>(poolSize);
+        String url = "jdbc:sqlite:" + file.toAbsolutePath();
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                Connection conn = DriverManager.getConnection(url);
+                try (Statement st = conn.createStatement()) {
+                    st.execute("PRAGMA journal_mode=WAL");  // Les lectures no esperen les escriptures
+                    st.execute("PRAGMA busy_timeout=5000");
+                }
+                PooledConnection pooled = new PooledConnection(conn);
+                all.add(pooled);
+                pool.add(pooled);
+            }
+        } catch (SQLException e) {
+            // Tanca les que ja s'havien obert (aquí, no amb close(): l'objecte encara no està construït)
+            for (PooledConnection conn : all) {
+                conn.close();
+            }
+            all.clear();
+            throw e;
+        }
+    }
+
+    public static AgentDatabase openDefault() throws SQLException, IOException {
+        if (Files.notExists(DEFAULT_FILE)) {
+            Files.createDirectories(DEFAULT_FILE.getParent());
+            try (InputStream is = AgentDatabase.class.getResourceAsStream(BUNDLED_FILE)) {
+                if (is != null) {
+                    Files.copy(is, DEFAULT_FILE);
+                }
+            }
+        }
+        return new AgentDatabase(DEFAULT_FILE, 3);
+    }
+
+    // Base de dades de l'aplicació: s'obre el primer cop que es demana (fora del fil de JavaFX)
+    public static synchronized AgentDatabase getDefault() throws SQLException, IOException {
+        if (shared == null) {
+            shared = openDefault();
+        }
+        return shared;
+    }
+
+    // Tanca la base de dades de l'aplicació, si s'ha obert
+    public static synchronized void closeDefault() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    // Crea la taula (si no hi és). Les pàgines van per 'number', la clau primària, i no cal cap més índex:
+    // la cerca es fa amb els índexs en memòria d'AgentCatalog (text dins del nom o l'habilitat, sense accents)
+    public void createTable(String table) throws SQLException {
+        String t = checkTable(table);
+        withConnection(conn -> {
+            try (Statement st = conn.connection.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS " + t + " ("
+                        + "number INTEGER PRIMARY KEY, name TEXT NOT NULL, type TEXT, ability TEXT, "
+                        + "height TEXT, weight TEXT, category TEXT, image TEXT)");
+            }
+            return null;
+        });
+    }
+
+    // Importa els agents en lots de 'batchSize' files dins d'una sola transacció: si falla (o es cancel·la)
+    // a mitges, no queda res importat (substitueix els que tenen el mateix número)
+    public int importAll(String table, Iterable<Agent> agents, int batchSize) throws SQLException {
+        createTable(table);
+        String sql = "INSERT OR REPLACE INTO " + checkTable(table) + " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        return withConnection(conn -> {
+            Connection c = conn.connection;
+            PreparedStatement ps = conn.prepare(sql);
+            int total = 0;
+            int pending = 0;
+            c.setAutoCommit(false);
+            try {
+                for (Agent agent : agents) {
+                    ps.setInt(1, agent.getNumber());
+                    ps.setString(2, agent.getName());
+                    ps.setString(3, agent.getType());
+                    ps.setString(4, agent.getAbility());
+                    ps.setString(5, agent.getHeight());
+                    ps.setString(6, agent.getWeight());
+                    ps.setString(7, agent.getCategory());
+                    ps.setString(8, agent.getImage());
+                    ps.addBatch();
+                    if (++pending == batchSize) {
+                        ps.executeBatch();
+                        total += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                    total += pending;
+                }
+                c.commit();
+                return total;
+            } catch (Exception e) {
+                // També si falla l'Iterable: sense desfer, setAutoCommit(true) confirmaria el que s'ha inserit.
+                // El lot es buida perquè la sentència es reutilitza i les files pendents s'executarien a la propera
+                try {
+                    ps.clearBatch();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                try {
+                    c.rollback();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        });
+    }
+
+    public int count(String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + checkTable(table);
+        return withConnection(conn -> {
+            try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    // Paginació per clau: els 'limit' agents amb número més gran que 'afterNumber'
+    // (la pàgina següent comença després de l'últim número de l'anterior, sense OFFSET)
+    public List<Agent> pageAfter(String table, int afterNumber, int limit) throws SQLException {
+        return query("SELECT " + COLUMNS + " FROM " + checkTable(table) + " WHERE number > ? ORDER BY number LIMIT ?",
+                afterNumber, limit);
+    }
+
+    private List<Agent> query(String sql, Object... params) throws SQLException {
+        return withConnection(conn -> {
+            PreparedStatement ps = conn.prepare(sql);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            List<Agent> result = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(readAgent(rs));
+                }
+            }
+            return result;
+        });
+    }
+
+    private static Agent readAgent(ResultSet rs) throws SQLException {
+        Agent agent = new Agent();
+        agent.setNumber(rs.getInt("number"));
+        agent.setName(rs.getString("name"));
+        agent.setType(rs.getString("type"));
+        agent.setAbility(rs.getString("ability"));
+        agent.setHeight(rs.getString("height"));
+        agent.setWeight(rs.getString("weight"));
+        agent.setCategory(rs.getString("category"));
+        agent.setImage(rs.getString("image"));
+        return agent;
+    }
+
+    // El nom de la taula va dins del SQL: només s'accepten noms simples
+    private static String checkTable(String table) {
+        if (table == null || !table.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("Nom de taula no vàlid: " + table);
+        }
+        return table;
+    }
+
+    private interface SqlWork<R> {
+        R run(PooledConnection conn) throws SQLException;
+    }
+
+    // Agafa una connexió del pool (espera si totes estan ocupades) i la torna en acabar
+    private <R> R withConnection(SqlWork<R> work) throws SQLException {
+        PooledConnection conn;
+        try {
+            conn = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interromput esperant una connexió", e);
+        }
+        try {
+            return work.run(conn);
+        } finally {
+            pool.add(conn);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PooledConnection conn : all) {
+            conn.close();
+        }
+        all.clear();
+    }
+
+    // Connexió amb les seves sentències preparades, que es reutilitzen entre consultes
+    private static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        void close() {
+            try {
+                for (PreparedStatement ps : statements.values()) {
+                    ps.close();
+                }
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
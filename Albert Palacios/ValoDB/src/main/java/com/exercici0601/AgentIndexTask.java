@@ -0,0 +1,36 @@
+// src/main/java/com/exercici0601/AgentIndexTask.java
+package com.exercici0601;
+
+import javafx.concurrent.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Construeix els índexs de la cerca fora del fil de JavaFX, amb tots els agents de la base de dades.
+// Només cal quan es cerca: per mirar la llista n'hi ha prou amb les pàgines.
+public class AgentIndexTask extends Task<AgentCatalog> {
+
+    private static final int PAGE_SIZE = 500;
+
+    // Executa la tasca en un fil virtual
+    public AgentIndexTask start() {
+        Thread.ofVirtual().name("agent-indexer").start(this);
+        return this;
+    }
+
+    @Override
+    protected AgentCatalog call() throws Exception {
+        AgentDatabase database = AgentDatabase.getDefault();
+        List<Agent> all = new ArrayList<>();
+        List<Agent> page;
+        do {
+            if (isCancelled()) {
+                return null;
+            }
+            int after = all.isEmpty() ? 0 : all.get(all.size() - 1).getNumber();
+            page = database.pageAfter(AgentLoadTask.TABLE, after, PAGE_SIZE);
+            all.addAll(page);
+        } while (page.size() == PAGE_SIZE);
+        return new AgentCatalog(all);
+    }
+}
@@ -0,0 +1,92 @@
+// src/main/java/com/exercici0601/AgentLoadTask.java
+package com.exercici0601;
+
+import com.utils.JsonRepository;
+import javafx.concurrent.Task;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// Carrega una pàgina d'agents fora del fil de JavaFX. El primer cop, abans, importa valorant.json
+// a la base de dades (registre a registre, en lots); després les pàgines es llegeixen de la taula
+// i el JSON ja no es torna a llegir. El progrés i el missatge arriben a la vista agrupats
+// (Task només envia una actualització per pols), i cada pàgina es mostra d'un sol cop.
+public class AgentLoadTask extends Task<List<Agent>> {
+
+    // Taula dels agents, i agents per pàgina de la llista
+    public static final String TABLE = "agents";
+    public static final int PAGE_SIZE = 50;
+    private static final int BATCH_SIZE = 200;
+
+    private static volatile boolean imported; // Ja s'ha comprovat (o fet) la importació
+
+    private final JsonRepository<Agent> repository;
+    private final int afterNumber;
+
+    // La pàgina amb els agents de número més gran que 'afterNumber' (0 per a la primera)
+    public AgentLoadTask(JsonRepository<Agent> repository, int afterNumber) {
+        this.repository = repository;
+        this.afterNumber = afterNumber;
+    }
+
+    // Executa la tasca en un fil virtual
+    public AgentLoadTask start() {
+        Thread.ofVirtual().name("agent-loader").start(this);
+        return this;
+    }
+
+    @Override
+    protected List<Agent> call() throws Exception {
+        AgentDatabase database = AgentDatabase.getDefault();
+        importIfEmpty(database);
+        if (isCancelled()) {
+            return null; // S'ha sortit de la vista
+        }
+
+        updateMessage("Llegint agents...");
+        List<Agent> page = database.pageAfter(TABLE, afterNumber, PAGE_SIZE);
+        updateProgress(1, 1);
+        return page;
+    }
+
+    // Si la taula és buida, hi importa el JSON (un sol cop, encara que hi hagi diverses tasques)
+    private void importIfEmpty(AgentDatabase database) throws SQLException {
+        if (imported) {
+            return;
+        }
+        synchronized (AgentLoadTask.class) {
+            if (imported) {
+                return;
+            }
+            database.createTable(TABLE);
+            if (database.count(TABLE) == 0) {
+                updateMessage("Important agents...");
+                long size = repository.size(); // El progrés es compta en bytes llegits: no cal recórrer el fitxer abans
+                try (JsonRepository<Agent>.RecordIterator it = repository.iterator()) {
+                    Iterable<Agent> records = () -> new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            if (isCancelled()) {
+                                throw new CancellationException(); // importAll ho desfà tot
+                            }
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Agent next() {
+                            Agent agent = it.next();
+                            if (size > 0) {
+                                updateProgress(Math.min(it.getBytesRead(), size), size);
+                            }
+                            return agent;
+                        }
+                    };
+                    database.importAll(TABLE, records, BATCH_SIZE);
+                }
+            }
+            imported = true;
+        }
+    }
+}
@@ -26,7 +26,7 @@ public class ControllerCharacter implements Initializable {
         try {
             URL imageURL = getClass().getResource("/assets/images0601/arrow-back.png");
             if (imageURL != null) {
-                imgArrowBack.setImage(new Image(imageURL.toExternalForm()));
+                imgArrowBack.setImage(new Image(imageURL.toExternalForm(), true));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -52,5 +52,9 @@ public class ControllerCharacter implements Initializable {
     @FXML
     private void toViewMain(MouseEvent event) {
         UtilsViews.setViewAnimating("ViewCharacters");
+        ControllerCharacters controller = UtilsViews.getController("ViewCharacters", ControllerCharacters.class);
+        if (controller != null) {
+            controller.ensureLoaded(); // Si la vista s'havia descarregat, el controlador és nou
+        }
     }
 }
\ No newline at end of file
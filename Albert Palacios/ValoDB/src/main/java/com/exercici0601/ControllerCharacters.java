@@ -1,87 +1,204 @@
 // src/main/java/com/exercici0601/ControllerCharacters.java
 package com.exercici0601;
 
+import com.utils.JsonRepository;
 import com.utils.UtilsViews;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.VBox;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 import java.util.ResourceBundle;
 
-public class ControllerCharacters implements Initializable {
+public class ControllerCharacters implements Initializable, AutoCloseable {
 
     @FXML private ImageView imgArrowBack;
-    @FXML private VBox list;
+    @FXML private TextField search;
+    @FXML private ProgressBar progress;
+    @FXML private Label status;
+    @FXML private ListView<Agent> list;
+
+    // Els agents es llegeixen de valorant.json registre a registre (només per importar-los)
+    private final JsonRepository<Agent> agents =
+            new JsonRepository<>(getClass(), "/assets/data/valorant.json", Agent::fromJson);
+
+    // Pàgines de la base de dades carregades fins ara: se'n demana una altra en arribar al final
+    private final ObservableList<Agent> paged = FXCollections.observableArrayList();
+    private boolean allPaged;      // L'última pàgina ja ha arribat
+
+    private AgentCatalog catalog;  // Índexs per cercar (null fins que es cerca per primer cop)
+    private AgentLoadTask loading; // Càrrega en curs (null si no n'hi ha cap)
+    private AgentIndexTask indexing;
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         try {
             URL imageURL = getClass().getResource("/assets/images0601/arrow-back.png");
             if (imageURL != null) {
-                imgArrowBack.setImage(new Image(imageURL.toExternalForm()));
+                imgArrowBack.setImage(new Image(imageURL.toExternalForm(), true));
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        loadList();
+        // Llista virtualitzada: només hi ha les cel·les visibles, i es reutilitzen en desplaçar-se
+        list.setCellFactory(listView -> new AgentCell(this::loadNextPage));
+        list.setFixedCellSize(AgentCell.HEIGHT);
+        list.setItems(paged);
+
+        // Filtra a cada tecla
+        search.textProperty().addListener((obs, oldText, text) -> filter(text));
+
+        // La llista es carrega en mostrar la vista (ensureLoaded), no aquí: la vista es pot
+        // precarregar fora del fil de JavaFX, i llavors initialize també s'hi executa (veure UtilsViews.registerView)
     }
 
+    // Torna a carregar la llista des de la primera pàgina (cancel·la la càrrega anterior si encara no ha acabat)
     public void loadList() {
-        try {
-            URL jsonFileURL = getClass().getResource("/assets/data/valorant.json");
-            Path path = Paths.get(jsonFileURL.toURI());
-            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-            JSONArray jsonInfo = new JSONArray(content);
-            String pathImages = "/assets/";
-
-            list.getChildren().clear();
-
-            for (int i = 0; i < jsonInfo.length(); i++) {
-                JSONObject obj = jsonInfo.getJSONObject(i);
-                Agent agent = new Agent();
-                agent.setNumber(obj.getInt("number"));
-                agent.setName(obj.getString("name"));
-                agent.setType(obj.getString("type"));
-                agent.setAbility(obj.getString("ability"));
-                agent.setHeight(obj.getString("height"));
-                agent.setWeight(obj.getString("weight"));
-                agent.setCategory(obj.getString("category"));
-                agent.setImage(obj.getString("image"));
-
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/assets/subviewCharacters.fxml"));
-                Parent itemPane = loader.load();
-                ControllerItem1 itemController = loader.getController();
-
-                itemController.setTitle(agent.getName());
-                itemController.setSubtitle(agent.getType());
-                itemController.setImage(pathImages + agent.getImage());
-                itemController.setCircleColor(agent.getCategoryColor());
-                itemController.setAgent(agent);
-
-                list.getChildren().add(itemPane);
+        cancelLoading();
+        paged.clear();
+        allPaged = false;
+        loadPage(0);
+    }
+
+    // Carrega la pàgina següent, si n'hi ha i no s'està cercant
+    private void loadNextPage() {
+        if (loading != null || allPaged || paged.isEmpty() || isSearching()) {
+            return;
+        }
+        loadPage(paged.get(paged.size() - 1).getNumber());
+    }
+
+    private void loadPage(int afterNumber) {
+        AgentLoadTask task = new AgentLoadTask(agents, afterNumber);
+        loading = task;
+        progress.progressProperty().bind(task.progressProperty());
+        status.textProperty().bind(task.messageProperty());
+        setLoadingVisible(true);
+
+        task.setOnSucceeded(e -> {
+            if (loading != task) {
+                return;
             }
-        } catch (Exception e) {
+            finishLoading();
+            List<Agent> page = task.getValue();
+            allPaged = page.size() < AgentLoadTask.PAGE_SIZE;
+            paged.addAll(page);
+            if (afterNumber == 0) {
+                filter(search.getText()); // Per si s'ha escrit mentre es carregava
+            }
+        });
+        task.setOnFailed(e -> {
+            if (loading != task) {
+                return;
+            }
+            finishLoading();
+            status.setText("Error al carregar la llista de personatges");
             System.err.println("Error al carregar la llista de personatges");
-            e.printStackTrace();
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(e -> {
+            if (loading == task) {
+                finishLoading();
+            }
+        });
+        task.start();
+    }
+
+    // Carrega la llista si encara no s'ha fet (o si es va cancel·lar en sortir de la vista)
+    public void ensureLoaded() {
+        if (paged.isEmpty() && loading == null) {
+            loadList();
+        }
+    }
+
+    private boolean isSearching() {
+        return !search.getText().isBlank();
+    }
+
+    // Sense text es mostren les pàgines; amb text, el resultat de la cerca.
+    // Els índexs es construeixen el primer cop que es cerca, quan la taula ja és a la base de dades
+    private void filter(String text) {
+        if (text == null || text.isBlank()) {
+            showAgents(paged);
+        } else if (catalog != null) {
+            showAgents(catalog.search(text));
+        } else if (indexing == null && !paged.isEmpty()) {
+            buildIndex();
+        }
+    }
+
+    private void buildIndex() {
+        AgentIndexTask task = new AgentIndexTask();
+        indexing = task;
+        task.setOnSucceeded(e -> {
+            if (indexing != task) {
+                return;
+            }
+            indexing = null;
+            catalog = task.getValue();
+            filter(search.getText());
+        });
+        task.setOnFailed(e -> {
+            if (indexing != task) {
+                return;
+            }
+            indexing = null;
+            System.err.println("Error al preparar la cerca de personatges");
+            task.getException().printStackTrace();
+        });
+        task.start();
+    }
+
+    private void cancelLoading() {
+        if (loading != null) {
+            AgentLoadTask task = loading;
+            finishLoading();
+            task.cancel();
         }
+        if (indexing != null) {
+            indexing.cancel();
+            indexing = null;
+        }
+    }
+
+    private void finishLoading() {
+        loading = null;
+        progress.progressProperty().unbind();
+        status.textProperty().unbind();
+        setLoadingVisible(false);
+    }
+
+    private void setLoadingVisible(boolean visible) {
+        progress.setVisible(visible);
+        progress.setManaged(visible);
+        status.setVisible(visible);
+        status.setManaged(visible);
+    }
+
+    private void showAgents(List<Agent> shown) {
+        list.setItems(shown == paged ? paged : FXCollections.observableList(shown));
+        list.scrollTo(0);
+    }
+
+    // UtilsViews descarrega la vista: la càrrega i la cerca en curs ja no tenen on mostrar-se
+    @Override
+    public void close() {
+        cancelLoading();
     }
 
     @FXML
     private void toViewMain(MouseEvent event) {
+        cancelLoading(); // No cal continuar carregant si ja no es veu
         UtilsViews.setViewAnimating("ViewMain");
     }
 }
\ No newline at end of file
@@ -1,13 +1,21 @@
 // src/main/java/com/exercici0601/ControllerItem1.java
 package com.exercici0601;
 
+import com.utils.ImageCache;
 import com.utils.UtilsViews;
 import javafx.fxml.FXML;
+import javafx.scene.Parent;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
+import javafx.scene.shape.StrokeType;
+import javafx.scene.text.Font;
 
 public class ControllerItem1 {
 
@@ -16,8 +24,59 @@ public class ControllerItem1 {
     @FXML private ImageView image;
     @FXML private Circle circle;
 
+    private Parent root;
     private Agent agent;
 
+    // Construeix l'element en codi, igual que subviewCharacters.fxml però sense
+    // tornar a llegir i interpretar l'FXML per a cada element de la llista
+    public static ControllerItem1 create() {
+        ControllerItem1 item = new ControllerItem1();
+
+        item.image = new ImageView();
+        item.image.setFitHeight(39.0);
+        item.image.setFitWidth(68.0);
+        item.image.setPickOnBounds(true);
+        item.image.setPreserveRatio(true);
+        AnchorPane.setTopAnchor(item.image, 3.0);
+        AnchorPane.setBottomAnchor(item.image, 13.0);
+        AnchorPane.setLeftAnchor(item.image, 154.0);
+        AnchorPane.setRightAnchor(item.image, 50.0);
+
+        item.title = new Label("TitleText");
+        item.title.setFont(new Font(18.0));
+        AnchorPane.setTopAnchor(item.title, 0.0);
+        AnchorPane.setLeftAnchor(item.title, 13.0);
+        AnchorPane.setRightAnchor(item.title, 17.0);
+
+        item.subtitle = new Label("Subtitle Text");
+        AnchorPane.setBottomAnchor(item.subtitle, 8.0);
+        AnchorPane.setLeftAnchor(item.subtitle, 5.0);
+        AnchorPane.setRightAnchor(item.subtitle, 25.0);
+
+        item.circle = new Circle(14.0);
+        item.circle.setStroke(Color.BLACK);
+        item.circle.setStrokeType(StrokeType.INSIDE);
+        AnchorPane.setTopAnchor(item.circle, 8.0);
+        AnchorPane.setLeftAnchor(item.circle, 231.0);
+
+        Pane separator = new Pane();
+        separator.setLayoutY(50.0);
+        separator.setPrefSize(272.0, 5.0);
+        separator.setStyle("-fx-background-color: #000000;");
+
+        AnchorPane pane = new AnchorPane(item.image, item.title, item.subtitle, item.circle, separator);
+        pane.setMinHeight(Region.USE_PREF_SIZE);
+        pane.setPrefSize(270.0, 55.0);
+        pane.setMaxSize(270.0, 55.0);
+        pane.setOnMouseClicked(item::toViewCharacter);
+        item.root = pane;
+        return item;
+    }
+
+    public Parent getRoot() {
+        return root;
+    }
+
     public void setTitle(String name) {
         title.setText(name);
     }
@@ -26,8 +85,8 @@ public class ControllerItem1 {
         subtitle.setText(type);
     }
 
-    public void setImage(String imagePath) {
-        image.setImage(new Image(getClass().getResourceAsStream(imagePath)));
+    public void setImage(Image image) {
+        this.image.setImage(image);
     }
 
     public void setCircleColor(String colorStyle) {
@@ -41,12 +100,12 @@ public class ControllerItem1 {
     @FXML
     private void toViewCharacter(MouseEvent event) {
         UtilsViews.setViewAnimating("ViewCharacter");
-        ControllerCharacter controller = (ControllerCharacter) UtilsViews.getController("ViewCharacter");
+        ControllerCharacter controller = UtilsViews.getController("ViewCharacter", ControllerCharacter.class);
         if (controller != null && agent != null) {
             controller.setNom(agent.getName());
             controller.setGame("Rol: " + agent.getType());
-            controller.setImage(new Image(getClass().getResourceAsStream("/assets/" + agent.getImage())));
+            controller.setImage(ImageCache.getFull("/assets/" + agent.getImage()));
             controller.setCircle(agent.getCategoryColor());
         }
     }
-}
\ No newline at end of file
+}
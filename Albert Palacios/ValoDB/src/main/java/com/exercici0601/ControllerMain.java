@@ -99,5 +99,9 @@ public class ControllerMain implements Initializable {
     @FXML
     private void toViewCharacters() {
         UtilsViews.setView("ViewCharacters");
+        ControllerCharacters controller = UtilsViews.getController("ViewCharacters", ControllerCharacters.class);
+        if (controller != null) {
+            controller.ensureLoaded(); // Carrega la llista (o la reprèn si es va cancel·lar en sortir de la vista)
+        }
     }
 }
\ No newline at end of file
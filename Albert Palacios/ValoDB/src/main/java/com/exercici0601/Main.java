@@ -23,12 +23,21 @@ public class Main extends Application {
     public void start(Stage stage) throws Exception {
 
         UtilsViews.parentContainer.setStyle("-fx-font: 14 arial;");
-        UtilsViews.addView(getClass(), "ViewCharacters", "/assets/viewCharacters.fxml");
-        UtilsViews.addView(getClass(), "ViewCharacter", "/assets/viewCharacter.fxml");
-        UtilsViews.addView(getClass(), "SubviewCharacter", "/assets/subviewCharacters.fxml"); // opcional, però bo
-        UtilsViews.addView(getClass(), "ViewMain", "/assets/viewMain.fxml");
+        // Les vistes es carreguen el primer cop que es mostren
+        UtilsViews.registerView(getClass(), "ViewCharacters", "/assets/viewCharacters.fxml");
+        UtilsViews.registerView(getClass(), "ViewCharacter", "/assets/viewCharacter.fxml");
+        UtilsViews.registerView(getClass(), "SubviewCharacter", "/assets/subviewCharacters.fxml"); // opcional, però bo
+        UtilsViews.registerView(getClass(), "ViewMain", "/assets/viewMain.fxml");
 
-        UtilsViews.setView("viewMain");
+        // Com a molt 2 vistes carregades: en anar al detall es descarrega la principal, i en tornar
+        // a la principal, el detall (la llista, que és la que costa de carregar, es queda)
+        UtilsViews.maxLoadedViews = 2;
+
+        // Mentre es mira una vista, es carrega en segon pla la que probablement vindrà després
+        UtilsViews.setLikelyNext("ViewMain", "ViewCharacters");
+        UtilsViews.setLikelyNext("ViewCharacters", "ViewCharacter");
+
+        UtilsViews.setView("ViewMain");
         Scene scene = new Scene(UtilsViews.parentContainer);
 
         stage.setScene(scene);
@@ -43,4 +52,9 @@ public class Main extends Application {
             stage.getIcons().add(icon);
         }
     }
+
+    @Override
+    public void stop() {
+        AgentDatabase.closeDefault();
+    }
 }
@@ -0,0 +1,69 @@
+package com.utils;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.image.Image;
+
+public class ImageCache {
+
+    // Size of the list thumbnails (the image keeps its ratio inside this box)
+    public static final double THUMBNAIL_SIZE = 80;
+
+    // Maximum number of images kept in memory, the least recently used is evicted first
+    public static int maxEntries = 64;
+
+    private static final Map<String, Image> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // Get the thumbnail variant of a resource image (for list cells)
+    public static Image getThumbnail(String resourcePath) {
+        return get(resourcePath, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+    }
+
+    // Get the full size variant of a resource image (for detail views)
+    public static Image getFull(String resourcePath) {
+        return get(resourcePath, 0, 0);
+    }
+
+    // Get an image scaled to fit width x height (0 = original size)
+    // The image is decoded in the background, views show it once loaded
+    public static synchronized Image get(String resourcePath, double width, double height) {
+        String key = resourcePath + "@" + width + "x" + height;
+        Image image = cache.get(key);
+        if (image != null) {
+            return image;
+        }
+
+        URL url = ImageCache.class.getResource(resourcePath);
+        if (url == null) {
+            System.err.println("Image not found: " + resourcePath);
+            return null;
+        }
+        image = new Image(url.toExternalForm(), width, height, true, true, true);
+
+        // Do not keep broken images, next call will try again
+        Image loading = image;
+        image.errorProperty().addListener((obs, oldError, error) -> {
+            if (error) {
+                remove(key, loading);
+            }
+        });
+
+        cache.put(key, image);
+        return image;
+    }
+
+    // Remove every cached image
+    public static synchronized void clear() {
+        cache.clear();
+    }
+
+    private static synchronized void remove(String key, Image image) {
+        cache.remove(key, image);
+    }
+}
@@ -0,0 +1,268 @@
+package com.utils;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+public class JsonRepository<T> implements Iterable<T> {
+
+    private final Class<?> cls;
+    private final String path;
+    private final Function<JSONObject, T> mapper;
+    private int count = -1; // Cached after the first count()
+
+    // Records of a JSON dataset in the classpath (an array of objects, or a single object)
+    // Each record is parsed and mapped on its own, the file is never loaded whole
+    public JsonRepository(Class<?> cls, String path, Function<JSONObject, T> mapper) {
+        this.cls = cls;
+        this.path = path;
+        this.mapper = mapper;
+    }
+
+    // Untyped repository, records are returned as JSONObject
+    public static JsonRepository<JSONObject> of(Class<?> cls, String path) {
+        return new JsonRepository<>(cls, path, Function.identity());
+    }
+
+    // Iterate over the records, the file is closed when the iteration ends
+    @Override
+    public RecordIterator iterator() {
+        InputStream is = cls.getResourceAsStream(path);
+        if (is == null) {
+            throw new UncheckedIOException(new IOException("Resource not found: " + path));
+        }
+        return new RecordIterator(is);
+    }
+
+    // Run action for every record
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        try (RecordIterator it = iterator()) {
+            while (it.hasNext()) {
+                action.accept(it.next());
+            }
+        }
+    }
+
+    // Lazy stream of records, close it (try-with-resources) if it is not fully consumed
+    public Stream<T> stream() {
+        RecordIterator it = iterator();
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(it::close);
+    }
+
+    // Get 'limit' records starting at 'offset', only those records are mapped
+    public List<T> page(int offset, int limit) {
+        List<T> page = new ArrayList<>(Math.max(0, Math.min(limit, 256)));
+        try (RecordIterator it = iterator()) {
+            for (int i = 0; i < offset && it.skip(); i++) {
+                // Skipped records are parsed but not mapped
+            }
+            while (page.size() < limit && it.hasNext()) {
+                page.add(it.next());
+            }
+        }
+        return page;
+    }
+
+    // Size of the file in bytes (-1 if unknown), to show progress with RecordIterator.getBytesRead()
+    // Nothing stays open: the size is read from the file, or from the jar entry (the jar is closed again)
+    public long size() {
+        URL url = cls.getResource(path);
+        if (url == null) {
+            return -1;
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return Files.size(Paths.get(url.toURI()));
+            }
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection jar) {
+                jar.setUseCaches(false); // Our own JarFile, so it can be closed
+                try (JarFile file = jar.getJarFile()) {
+                    JarEntry entry = file.getJarEntry(jar.getEntryName());
+                    return entry == null ? -1 : entry.getSize();
+                }
+            }
+            InputStream is = connection.getInputStream();
+            try {
+                return connection.getContentLengthLong();
+            } finally {
+                is.close();
+            }
+        } catch (IOException | URISyntaxException e) {
+            return -1;
+        }
+    }
+
+    // Number of records (the file is scanned once, then the result is cached)
+    public synchronized int count() {
+        if (count < 0) {
+            int n = 0;
+            try (RecordIterator it = iterator()) {
+                while (it.skip()) {
+                    n++;
+                }
+            }
+            count = n;
+        }
+        return count;
+    }
+
+    public class RecordIterator implements Iterator<T>, AutoCloseable {
+
+        private final CountingInputStream is;
+        private final JSONTokener tokener;
+        private boolean started;
+        private boolean array;
+        private boolean ready;    // The tokener is right before the '{' of the next record
+        private boolean finished;
+
+        private RecordIterator(InputStream is) {
+            this.is = new CountingInputStream(is);
+            this.tokener = new JSONTokener(new BufferedReader(new InputStreamReader(this.is, StandardCharsets.UTF_8)));
+        }
+
+        // Bytes read from the file so far (a little ahead of the last record, because of the buffers)
+        public long getBytesRead() {
+            return is.count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            char c;
+            if (!started) {
+                started = true;
+                c = tokener.nextClean();
+                if (c == '[') {
+                    array = true;
+                    c = tokener.nextClean();
+                }
+            } else if (!array) {
+                c = 0; // A single object has already been returned
+            } else {
+                c = tokener.nextClean();
+                if (c == ',') {
+                    c = tokener.nextClean();
+                }
+            }
+            if (c == 0 || c == ']') {
+                close();
+                return false;
+            }
+            if (c != '{') {
+                close();
+                throw tokener.syntaxError("Expected a JSON object in " + path);
+            }
+            tokener.back();
+            ready = true;
+            return true;
+        }
+
+        @Override
+        public T next() {
+            return mapper.apply(nextObject());
+        }
+
+        // Parse the next record without mapping it, returns false at the end
+        public boolean skip() {
+            if (!hasNext()) {
+                return false;
+            }
+            nextObject();
+            return true;
+        }
+
+        private JSONObject nextObject() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            try {
+                return new JSONObject(tokener);
+            } catch (JSONException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            ready = false;
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Nothing to do, the data has already been read
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
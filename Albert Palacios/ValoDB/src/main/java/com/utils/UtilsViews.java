@@ -1,13 +1,14 @@
 package com.utils;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javafx.animation.Interpolator;
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
-import javafx.collections.ObservableList;
+import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Node;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.util.Duration;
@@ -15,164 +16,321 @@ import javafx.util.Duration;
 public class UtilsViews {
 
     public static StackPane parentContainer = new StackPane();
-    public static ArrayList<Object> controllers = new ArrayList<>();
+
+    // Maximum number of registered views kept loaded (0 = keep all)
+    // Views not shown recently are unloaded and loaded again when needed
+    // A controller that implements AutoCloseable is closed when its view is unloaded (stop its tasks there)
+    public static int maxLoadedViews = 0;
+
+    // One registered view: how to load it, and its node and controller once loaded
+    private static class View {
+        final String id;
+        final int order;       // Registration order, gives the direction of the animations
+        final Class<?> cls;
+        final String path;
+        final boolean lazy;    // Registered with registerView, can be unloaded and loaded again
+        Pane node;             // null while not loaded
+        Object controller;
+        CompletableFuture<FXMLLoader> preload; // Background load not attached yet (null if none)
+
+        View(String id, int order, Class<?> cls, String path, boolean lazy) {
+            this.id = id;
+            this.order = order;
+            this.cls = cls;
+            this.path = path;
+            this.lazy = lazy;
+        }
+    }
+
+    private static final HashMap<String, View> views = new HashMap<>();
+    private static final HashMap<String, String> likelyNext = new HashMap<>(); // View to preload after showing a view
+    private static final LinkedHashMap<String, View> loadedLazy =
+            new LinkedHashMap<>(16, 0.75f, true);                               // Least recently shown first
+    private static View activeView;
+
+    // Animation of setViewAnimating: the same two transitions for every navigation, retargeted with setNode
+    private static final Duration ANIMATION_TIME = Duration.seconds(0.4);
+    private static TranslateTransition slideLeft;
+    private static TranslateTransition slideRight;
+    private static View animatedFrom;     // View being hidden by the running animation (null if none)
+    private static Pane animatedFromNode;
+    private static Pane animatedToNode;
 
     // Add one view to the list
     public static void addView(Class<?> cls, String name, String path) throws Exception {
-        
-        boolean defaultView = false;
+
+        View view = new View(name, views.size(), cls, path, false);
+        views.put(name, view);
+
         FXMLLoader loader = new FXMLLoader(cls.getResource(path));
-        Pane view = loader.load();
-        ObservableList<Node> children = parentContainer.getChildren();
+        attach(view, loader.load(), loader.getController());
 
         // First view is the default view
-        if (children.isEmpty()) {
-            defaultView = true;
+        if (activeView == null) {
+            show(view);
         }
+    }
 
-        view.setId(name);
-        view.setVisible(defaultView);
-        view.setManaged(defaultView);
+    // Register one view, it is loaded the first time it is shown
+    // If it is preloaded (setLikelyNext), FXMLLoader.load() and so the controller's initialize() run outside
+    // the JavaFX thread. Then initialize() must only create and set up the view's own nodes (allowed while they
+    // are not in the scene): no tasks, timers, animations or changes to nodes already shown. Start that work
+    // when the view is shown instead
+    public static void registerView(Class<?> cls, String name, String path) {
+        views.put(name, new View(name, views.size(), cls, path, true));
+    }
 
-        children.add(view);
-        controllers.add(loader.getController());
+    // Preload nextViewId in the background every time viewId is shown
+    // Only for views whose controller follows the rule for initialize() described in registerView
+    public static void setLikelyNext(String viewId, String nextViewId) {
+        likelyNext.put(viewId, nextViewId);
+    }
+
+    // Load a registered view in the background, so showing it later is immediate
+    // Nodes can be built outside the JavaFX thread while they are not in the scene (see registerView)
+    public static void preloadView(String viewId) {
+        View view = views.get(viewId);
+        if (view == null || view.node != null || view.preload != null) {
+            return;
+        }
+        CompletableFuture<FXMLLoader> preload = new CompletableFuture<>();
+        view.preload = preload;
+        Thread.ofVirtual().name("view-preload").start(() -> {
+            try {
+                FXMLLoader loader = new FXMLLoader(view.cls.getResource(view.path));
+                loader.load();
+                preload.complete(loader);
+            } catch (Exception e) {
+                System.err.println("Error preloading view " + viewId);
+                e.printStackTrace();
+                preload.completeExceptionally(e);
+            }
+            // Attach it, unless load() has already taken it
+            Platform.runLater(() -> {
+                if (view.preload == preload) {
+                    view.preload = null;
+                    if (!preload.isCompletedExceptionally()) {
+                        FXMLLoader loader = preload.join();
+                        attach(view, loader.getRoot(), loader.getController());
+                    }
+                }
+            });
+        });
     }
 
     // Get controller by view id (viewId)
     public static Object getController(String viewId) {
-        int index = 0;
-        for (Node n : parentContainer.getChildren()) {
-            if (n.getId().equals(viewId)) {
-                return controllers.get(index);
-            }
-            index++;
+        View view = views.get(viewId);
+        if (view == null || !load(view)) {
+            return null;
         }
-        return null;
+        return view.controller;
+    }
+
+    // Get controller by view id (viewId), with its type
+    public static <T> T getController(String viewId, Class<T> type) {
+        return type.cast(getController(viewId));
     }
 
     // Get name of active view
     public static String getActiveView() {
-        for (Node n : parentContainer.getChildren()) {
-            if (n.isVisible()) {
-                return n.getId();
-            }
-        }
-        return null; // No hi ha cap vista activa
+        return activeView == null ? null : activeView.id; // No hi ha cap vista activa
     }
 
     // Set visible view by its id (viewId)
     public static void setView(String viewId) {
 
-        ArrayList<Node> list = new ArrayList<>();
-        list.addAll(parentContainer.getChildrenUnmodifiable());
-
-        // Show next view, hide others
-        for (Node n : list) {
-            if (n.getId().equals(viewId)) {
-                n.setVisible(true);
-                n.setManaged(true);
-            } else {
-                n.setVisible(false);
-                n.setManaged(false);
+        View nxtView = views.get(viewId);
+        if (nxtView == null || !load(nxtView)) {
+            return;
+        }
+
+        // Show next view, hide the current one
+        if (activeView != nxtView) {
+            if (activeView != null) {
+                hide(activeView);
             }
+            show(nxtView);
         }
 
         // Remove focus from buttons
         parentContainer.requestFocus();
+
+        viewShown(nxtView);
+        evictViews();
     }
 
     // Set visible view by its id (viewId) with an animation
     public static void setViewAnimating(String viewId) {
 
-        ArrayList<Node> list = new ArrayList<>();
-        list.addAll(parentContainer.getChildrenUnmodifiable());
+        View nxtView = views.get(viewId);
+        if (nxtView == null || !load(nxtView)) {
+            return;
+        }
 
-        // Get current view
-        Node curView = null;
-        for (Node n : list) {
-            if (n.isVisible()) {
-                curView = n;
-            }
+        // The two transitions are created once (the toolkit is running by now) and reused
+        if (slideLeft == null) {
+            slideLeft = new TranslateTransition(ANIMATION_TIME);
+            slideLeft.setInterpolator(Interpolator.EASE_BOTH);
+            slideRight = new TranslateTransition(ANIMATION_TIME);
+            slideRight.setInterpolator(Interpolator.EASE_BOTH);
+            slideRight.setOnFinished(t -> animationFinished()); // Both end at the same time
         }
 
-        if (curView.getId().equals(viewId)) {
-            return; // Do nothing if current view is the same as the next view
+        // Get current view
+        View curView = activeView;
+        if (curView == null) {
+            setView(viewId); // Nothing to animate from
+            return;
         }
 
-        // Get nxtView
-        Node nxtView = null;
-        for (Node n : list) {
-            if (n.getId().equals(viewId)) {
-                nxtView = n;
-            }
+        if (curView == nxtView) {
+            return; // Do nothing if current view is the same as the next view
         }
 
         // Set nxtView visible
-        nxtView.setVisible(true);
-        nxtView.setManaged(true);
+        show(nxtView);
+
+        // If the previous animation is still running, finish it now: its transitions are reused
+        if (animatedFrom != null) {
+            slideLeft.stop();
+            slideRight.stop();
+            animationFinished();
+        }
 
-        // By default, set animation to the left
         double width = parentContainer.getScene().getWidth();
-        double xLeftStart = 0;
-        double xLeftEnd = 0;
-        double xRightStart = 0;
-        double xRightEnd = 0;
-        Node animatedViewLeft = null;
-        Node animatedViewRight = null;
+        if (curView.order < nxtView.order) {
+            // If curView is lower than nxtView, animate to the left
+            slide(slideLeft, curView.node, 0, -width);
+            slide(slideRight, nxtView.node, width, 0);
+        } else {
+            // If curView is greater than nxtView, animate to the right
+            slide(slideLeft, nxtView.node, -width, 0);
+            slide(slideRight, curView.node, 0, width);
+        }
+        animatedFrom = curView;
+        animatedFromNode = curView.node;
+        animatedToNode = nxtView.node;
+        slideLeft.play();
+        slideRight.play();
 
-        if (list.indexOf(curView) < list.indexOf(nxtView)) {
+        // Remove focus from buttons
+        parentContainer.requestFocus();
 
-            // If curView is lower than nxtView, animate to the left
-            xLeftStart = 0;
-            xLeftEnd = -width;
-            xRightStart = width;
-            xRightEnd = 0;
-            animatedViewLeft = curView;
-            animatedViewRight = nxtView;
+        viewShown(nxtView);
+    }
 
-            curView.translateXProperty().set(xLeftStart);
-            nxtView.translateXProperty().set(xRightStart);
+    private static void slide(TranslateTransition transition, Pane node, double fromX, double toX) {
+        transition.setNode(node);
+        transition.setFromX(fromX);
+        transition.setToX(toX);
+    }
 
-        } else { 
+    private static void animationFinished() {
+        // Hide the previous view (unless it has been shown again meanwhile) and reset translations
+        if (activeView != animatedFrom) {
+            animatedFromNode.setVisible(false);
+            animatedFromNode.setManaged(false);
+        }
+        animatedFromNode.setTranslateX(0);
+        animatedToNode.setTranslateX(0);
+        animatedFrom = null;
+        animatedFromNode = null;
+        animatedToNode = null;
+        slideLeft.setNode(null); // Do not keep unloaded views alive
+        slideRight.setNode(null);
+        evictViews();
+    }
 
-            // If curView is greater than nxtView, animate to the right
-            xLeftStart = -width;
-            xLeftEnd = 0;
-            xRightStart = 0;
-            xRightEnd = width;
-            animatedViewLeft = nxtView;
-            animatedViewRight = curView;
-
-            curView.translateXProperty().set(xRightStart);
-            nxtView.translateXProperty().set(xLeftStart);
-        }
-
-        // Animate leftView 
-        final double seconds = 0.4;
-        KeyValue kvLeft = new KeyValue(animatedViewLeft.translateXProperty(), xLeftEnd, Interpolator.EASE_BOTH);
-        KeyFrame kfLeft = new KeyFrame(Duration.seconds(seconds), kvLeft);
-        Timeline timelineLeft = new Timeline();
-        timelineLeft.getKeyFrames().add(kfLeft);
-        timelineLeft.play();
-
-        // Animate rightView 
-        KeyValue kvRight = new KeyValue(animatedViewRight.translateXProperty(), xRightEnd, Interpolator.EASE_BOTH);
-        KeyFrame kfRight = new KeyFrame(Duration.seconds(seconds), kvRight);
-        Timeline timelineRight = new Timeline();
-        timelineRight.getKeyFrames().add(kfRight);
-        timelineRight.setOnFinished(t -> {
-            // Hide other views and reset all translations
-            for (Node n : list) {
-                if (!n.getId().equals(viewId)) {
-                    n.setVisible(false);
-                    n.setManaged(false);
+    // Load a registered view if it is not loaded yet, returns false if it can not be loaded
+    private static boolean load(View view) {
+        if (view.node != null) {
+            return true;
+        }
+        try {
+            FXMLLoader loader = null;
+            if (view.preload != null) {
+                // Being preloaded: wait for it instead of building a second copy (and a second controller)
+                CompletableFuture<FXMLLoader> preload = view.preload;
+                view.preload = null;
+                try {
+                    loader = preload.join();
+                } catch (CompletionException e) {
+                    // The preload failed, try again below
                 }
-                n.translateXProperty().set(0);
             }
-        });
-        timelineRight.play();
+            if (loader == null) {
+                loader = new FXMLLoader(view.cls.getResource(view.path));
+                loader.load();
+            }
+            attach(view, loader.getRoot(), loader.getController());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error loading view " + view.id);
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-        // Remove focus from buttons
-        parentContainer.requestFocus();
+    private static void attach(View view, Pane node, Object controller) {
+        node.setId(view.id);
+        node.setVisible(false);
+        node.setManaged(false);
+        view.node = node;
+        view.controller = controller;
+        parentContainer.getChildren().add(node);
+        if (view.lazy) {
+            loadedLazy.put(view.id, view);
+        }
+    }
+
+    private static void show(View view) {
+        view.node.setVisible(true);
+        view.node.setManaged(true);
+        activeView = view;
+    }
+
+    private static void hide(View view) {
+        view.node.setVisible(false);
+        view.node.setManaged(false);
+    }
+
+    private static void viewShown(View view) {
+        loadedLazy.get(view.id); // Mark as the most recently shown
+        String next = likelyNext.get(view.id);
+        if (next != null) {
+            preloadView(next);
+        }
+    }
+
+    // Let the controller stop its work before it is dropped
+    private static void unload(View view) {
+        if (view.controller instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                System.err.println("Error unloading view " + view.id);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Unload the registered views shown least recently, while there are more than maxLoadedViews
+    private static void evictViews() {
+        if (maxLoadedViews <= 0 || loadedLazy.size() <= maxLoadedViews) {
+            return;
+        }
+        Iterator<View> it = loadedLazy.values().iterator();
+        while (it.hasNext() && loadedLazy.size() > maxLoadedViews) {
+            View view = it.next();
+            if (view.node.isVisible()) {
+                continue; // Active or still animating
+            }
+            it.remove();
+            unload(view);
+            parentContainer.getChildren().remove(view.node);
+            view.node = null;
+            view.controller = null;
+        }
     }
 }
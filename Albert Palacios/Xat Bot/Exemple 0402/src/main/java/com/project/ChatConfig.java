@@ -0,0 +1,209 @@
+package com.project;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuración del chat, leída de las propiedades del sistema.
+ *
+ * Se pueden cambiar al arrancar, por ejemplo:
+ *   MAVEN_OPTS="-Dchat.cache=true" ./run.sh com.project.Main
+ */
+public final class ChatConfig {
+
+    private ChatConfig() {}
+
+    // ================== OLLAMA ==================
+
+    /** URL base del servidor Ollama. */
+    public static URI ollamaUrl() {
+        return URI.create(System.getProperty("chat.ollama.url", "http://localhost:11434"));
+    }
+
+    /**
+     * Servidores Ollama entre los que se reparten las peticiones (separados por comas).
+     * Por defecto, solo ollamaUrl().
+     */
+    public static List<URI> ollamaUrls() {
+        String urls = System.getProperty("chat.ollama.urls");
+        if (urls == null || urls.isBlank()) return List.of(ollamaUrl());
+        return Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(URI::create)
+                .toList();
+    }
+
+    /** Cada cuánto se pregunta a los servidores qué modelos tienen cargados (0 = nunca). */
+    public static Duration routerRefreshInterval() {
+        return Duration.ofSeconds(Long.getLong("chat.router.refresh", 30));
+    }
+
+    /** Modelo para las peticiones de texto. */
+    public static String textModel() {
+        return System.getProperty("chat.model.text", "gemma3:1b");
+    }
+
+    /** Modelo multimodal para las peticiones con imagen. */
+    public static String imageModel() {
+        return System.getProperty("chat.model.image", "llava-phi3:latest");
+    }
+
+    /** Precarga el modelo de texto al arrancar la aplicación (activado por defecto). */
+    public static boolean prewarm() {
+        return Boolean.parseBoolean(System.getProperty("chat.prewarm", "true"));
+    }
+
+    /** Tiempo que Ollama mantiene cargado un modelo tras usarlo ("keep_alive"). */
+    public static Duration keepAlive() {
+        return Duration.ofSeconds(Long.getLong("chat.keepAlive", 1800));
+    }
+
+    /** keep_alive de un modelo concreto (-Dchat.keepAlive.<modelo>=segundos), o el general. */
+    public static Duration keepAlive(String model) {
+        return Duration.ofSeconds(Long.getLong("chat.keepAlive." + model, keepAlive().toSeconds()));
+    }
+
+    // ================== CLIENTE HTTP ==================
+
+    /** Versión HTTP: HTTP_1_1 (por defecto) o HTTP_2. */
+    public static HttpClient.Version httpVersion() {
+        return HttpClient.Version.valueOf(System.getProperty("chat.http.version", "HTTP_1_1"));
+    }
+
+    /** Tiempo máximo para abrir la conexión. */
+    public static Duration httpConnectTimeout() {
+        return Duration.ofSeconds(Long.getLong("chat.http.connectTimeout", 3));
+    }
+
+    /**
+     * Tiempo máximo hasta recibir las cabeceras de la respuesta.
+     * Sin streaming, Ollama no responde hasta haber generado todo: por eso es largo.
+     */
+    public static Duration httpRequestTimeout() {
+        return Duration.ofSeconds(Long.getLong("chat.http.requestTimeout", 300));
+    }
+
+    /** Tiempo que una conexión keep-alive puede quedarse inactiva en el pool. */
+    public static Duration httpIdleTimeout() {
+        return Duration.ofSeconds(Long.getLong("chat.http.idleTimeout", 300));
+    }
+
+    /** Conexiones máximas guardadas en el pool (0 = sin límite). */
+    public static int httpPoolSize() {
+        return Integer.getInteger("chat.http.poolSize", 8);
+    }
+
+    /** Hilos del executor del HttpClient. */
+    public static int httpThreads() {
+        return Integer.getInteger("chat.http.threads", 4);
+    }
+
+    // ================== REINTENTOS Y CORTACIRCUITOS ==================
+
+    /** Tiempo máximo de una petición entera (reintentos y lectura de la respuesta incluidos). */
+    public static Duration requestDeadline() {
+        return Duration.ofSeconds(Long.getLong("chat.deadline", 600));
+    }
+
+    /** Intentos por petición (1 = sin reintentos). Solo se reintenta antes del primer token. */
+    public static int retryAttempts() {
+        return Integer.getInteger("chat.retry.attempts", 3);
+    }
+
+    /** Espera antes del primer reintento; se dobla en cada intento. */
+    public static Duration retryBaseDelay() {
+        return Duration.ofMillis(Long.getLong("chat.retry.baseDelayMs", 250));
+    }
+
+    /** Espera máxima entre reintentos. */
+    public static Duration retryMaxDelay() {
+        return Duration.ofMillis(Long.getLong("chat.retry.maxDelayMs", 4000));
+    }
+
+    /** Fallos de conexión seguidos que abren el cortacircuitos. */
+    public static int breakerFailures() {
+        return Integer.getInteger("chat.breaker.failures", 3);
+    }
+
+    /** Cada cuánto se comprueba Ollama mientras el cortacircuitos está abierto. */
+    public static Duration breakerProbeInterval() {
+        return Duration.ofMillis(Long.getLong("chat.breaker.probeMs", 2000));
+    }
+
+    // ================== COLA DE PETICIONES ==================
+
+    /** Peticiones a Ollama en curso a la vez, sumando todos los modelos. */
+    public static int maxConcurrentRequests() {
+        return Integer.getInteger("chat.concurrency", 3);
+    }
+
+    /**
+     * Peticiones en curso a la vez para un modelo (-Dchat.concurrency.<modelo>=N).
+     * Por defecto 1 para el modelo de imagen (pesado) y 2 para los demás.
+     */
+    public static int modelConcurrency(String model) {
+        return Integer.getInteger("chat.concurrency." + model, model.equals(imageModel()) ? 1 : 2);
+    }
+
+    /** Peticiones que pueden esperar en la cola; las que no caben se rechazan. */
+    public static int queueCapacity() {
+        return Integer.getInteger("chat.queue.capacity", 16);
+    }
+
+    // ================== CACHÉ DE RESPUESTAS ==================
+
+    /** Activa la caché de respuestas (desactivada por defecto). */
+    public static boolean cacheEnabled() {
+        return Boolean.getBoolean("chat.cache");
+    }
+
+    /** Guarda también las respuestas en disco (data/response-cache). */
+    public static boolean cachePersistent() {
+        return Boolean.getBoolean("chat.cache.persist");
+    }
+
+    /** Número máximo de respuestas en memoria. */
+    public static int cacheMaxEntries() {
+        return Integer.getInteger("chat.cache.maxEntries", 256);
+    }
+
+    /** Tamaño máximo en memoria, en caracteres (prompts + respuestas). */
+    public static long cacheMaxChars() {
+        return Long.getLong("chat.cache.maxChars", 2_000_000L);
+    }
+
+    /**
+     * Caracteres por frame al pintar una respuesta de la caché (0 = toda de golpe).
+     * Con 8, a 60 frames por segundo, unos 480 caracteres por segundo.
+     */
+    public static int cacheReplayCharsPerFrame() {
+        return Integer.getInteger("chat.cache.replayCharsPerFrame", 8);
+    }
+
+    public static Path cacheDir() {
+        return Paths.get("data", "response-cache");
+    }
+
+    // ================== HISTORIAL ==================
+
+    /** Guarda el historial del chat en SQLite (activado por defecto). */
+    public static boolean historyEnabled() {
+        return Boolean.parseBoolean(System.getProperty("chat.history", "true"));
+    }
+
+    /** Fichero SQLite del historial. */
+    public static Path historyFile() {
+        return Paths.get(System.getProperty("chat.history.file", "data/chat.sqlite"));
+    }
+
+    /** Mensajes que se cargan de golpe al arrancar o al llegar arriba del todo. */
+    public static int historyPageSize() {
+        return Integer.getInteger("chat.history.pageSize", 50);
+    }
+}
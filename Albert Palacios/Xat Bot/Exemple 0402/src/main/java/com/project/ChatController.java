@@ -1,42 +1,41 @@
 package com.project;
 
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.control.*;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.stage.FileChooser;
-import org.json.JSONObject;
-import org.json.JSONArray;
 
 import java.io.*;
-import java.net.URI;
-import java.net.http.*;
-import java.nio.file.Files;
-import java.time.Duration;
-import java.util.Base64;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Controlador principal de la aplicación de chat.
  * Gestiona la interacción del usuario, las peticiones a Ollama (texto e imagen),
  * y actualiza la interfaz de forma segura usando Platform.runLater().
- * 
+ *
  * Cumple con los requisitos del enunciado:
  * - Texto: streaming en tiempo real con gemma3:1b
  * - Imagen: respuesta completa con llava-phi3 (muestra "Thinking...")
  * - Cancelación en cualquier momento
  * - No bloquea el hilo de JavaFX
+ *
+ * Cada petición es una ChatTask independiente (ver ConversationManager),
+ * así que se pueden tener varias preguntas en curso a la vez.
  */
 public class ChatController {
 
+    private static final String QUEUE_FULL_MESSAGE = "[Massa peticions en cua: torna-ho a provar d'aquí a una estona]";
+
     // --- Referencias a elementos de la interfaz (inyectadas por FXML) ---
     @FXML private TextField textInput;
-    @FXML private VBox chatBox;          // Contenedor de mensajes
-    @FXML private ScrollPane chatScroll; // Permite desplazarse si hay muchos mensajes
+    @FXML private ListView<ChatMessage> chatList; // Mensajes del chat (solo crea nodos para los visibles)
     @FXML private Button btnTextRequest;
     @FXML private Button btnPickImage;
     @FXML private Button btnSendImage;
@@ -44,23 +43,39 @@ public class ChatController {
     @FXML private Label lblImageName;    // Muestra nombre de imagen seleccionada
     @FXML private Label status;          // Estado actual (Idle, Thinking..., etc.)
     @FXML private ProgressIndicator progress; // Indicador de carga
-
-    // --- Cliente HTTP para comunicarse con Ollama (localhost:11434) ---
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10)) // Tiempo máximo para conectar
-            .build();
-
-    // --- Gestión de concurrencia y cancelación ---
-    private CompletableFuture<?> currentRequest; // Guarda la petición en curso (para posible cancelación lógica)
-    private final AtomicBoolean isCancelled = new AtomicBoolean(false); // Bandera segura para hilos: indica si el usuario canceló
+    @FXML private Label stats;           // Tiempos por modelo (TTFT, total, tokens/s)
 
     // --- Estado de la aplicación ---
     private File selectedImage; // Imagen seleccionada por el usuario
-    private final String OLLAMA_URL = "http://localhost:11434/api/generate"; // Endpoint de Ollama para generar respuestas
+    private final ObservableList<ChatMessage> messages = FXCollections.observableArrayList(); // Historial (hilo de JavaFX)
 
-    // --- Executor para tareas de streaming (evita bloquear el hilo de JavaFX) ---
-    // Usa un único hilo dedicado para leer el stream de Ollama
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // --- Reduce las imágenes a la resolución de llava-phi3 (336 px) y las guarda en data/image-cache ---
+    private final ImagePreprocessor imagePreprocessor = new ImagePreprocessor(Paths.get("data", "image-cache"), 336);
+
+    // --- Gestión de concurrencia y cancelación ---
+    // Cada petición se ejecuta en su propio hilo virtual, con su propia bandera de cancelación.
+    // Todas comparten el mismo OllamaRouter: reparte entre servidores y conserva sus conexiones keep-alive.
+    // Si hay demasiadas a la vez, esperan en una cola con prioridad (ver RequestScheduler).
+    // La caché de respuestas es opcional (-Dchat.cache=true, ver ChatConfig).
+    private final ConversationManager conversations = new ConversationManager(
+            OllamaRouter.shared(), PromptCache.fromConfig(), this::onLoadChanged);
+
+    // --- Modelo para cada tipo de petición (texto o imagen, ver ModelRegistry) ---
+    private final ModelRegistry models = ModelRegistry.fromConfig();
+
+    // --- Historial de la conversación ---
+    // Guarda el "context" que devuelve Ollama, así cada pregunta continúa la anterior
+    // sin reenviar (ni reprocesar) todo el historial.
+    private final Conversation conversation = new Conversation();
+
+    // --- Historial guardado en data/chat.sqlite (null si está desactivado, ver ChatConfig) ---
+    // Al arrancar solo se carga la última página; las anteriores, al llegar arriba del todo.
+    private final TranscriptStore history = TranscriptStore.fromConfig();
+    private final AtomicLong nextSeq = new AtomicLong(1); // Orden del próximo mensaje
+    private long conversationId = 1;                      // Conversación actual (solo hilo de JavaFX)
+    private long oldestLoadedSeq;                         // Primer mensaje cargado (solo hilo de JavaFX)
+    private boolean hasOlder;                             // Quedan mensajes por cargar
+    private boolean loadingOlder;                         // Hay una carga en curso
 
     /**
      * Método llamado automáticamente al cargar la interfaz (después de @FXML).
@@ -71,6 +86,38 @@ public class ChatController {
         status.setText("Idle");
         btnStop.setDisable(true);   // No se puede cancelar si no hay petición activa
         progress.setVisible(false); // Ocultamos el indicador de progreso
+
+        chatList.setItems(messages);
+        chatList.setCellFactory(ChatMessageCell::new);
+        chatList.setFocusTraversable(false);
+
+        // Si un servidor Ollama deja de responder, sus peticiones van a otro (o fallan al momento): se avisa en el estado
+        OllamaRouter router = OllamaRouter.shared();
+        for (OllamaClient client : router.clients()) {
+            client.breaker().setListener(state -> Platform.runLater(() -> {
+                int down = router.unavailableCount();
+                status.setText(down > 0
+                        ? "Ollama no respon (" + down + "/" + router.clients().size() + " servidors) · comprovant..."
+                        : "Ollama torna a respondre");
+            }));
+        }
+        // Al llegar arriba del todo, carga la página anterior del historial
+        chatList.skinProperty().addListener((obs, old, skin) -> {
+            if (chatList.lookup(".virtual-flow") instanceof VirtualFlow<?> flow) {
+                flow.positionProperty().addListener((o, before, position) -> {
+                    if (position.doubleValue() <= 0) loadOlderMessages(false);
+                });
+            }
+        });
+
+        if (history != null) {
+            // Cada arranque empieza una conversación nueva: el context de Ollama no se guarda
+            nextSeq.set(history.getLastSeq() + 1);
+            conversationId = history.getLastConversation() + 1;
+            oldestLoadedSeq = nextSeq.get();
+            hasOlder = history.getLastSeq() > 0;
+            loadOlderMessages(true);
+        }
     }
 
     // ================== ENVÍO DE TEXTO (CON STREAMING) ==================
@@ -92,100 +139,37 @@ public class ChatController {
 
     /**
      * Envía una petición de texto a Ollama usando el modelo 'gemma3:1b' con streaming activado.
-     * 
-     * IMPORTANTE: 
+     *
+     * IMPORTANTE:
      * - Usa streaming (stream: true) para cumplir el requisito de mostrar la respuesta "a medida que se recibe".
      * - La respuesta de Ollama llega como un flujo de JSON por líneas (Server-Sent Events).
-     * - Se procesa en un hilo secundario (executorService) para no bloquear JavaFX.
-     * - Cada fragmento ("token") se añade inmediatamente a la interfaz.
+     * - Se procesa en un hilo virtual propio (ChatTask) para no bloquear JavaFX.
+     * - Cada fragmento ("token") se acumula en un TokenSink, que lo pinta en el siguiente frame.
      */
     private void startTextStreamRequest(String prompt) {
-        // Construye el cuerpo de la petición en JSON
-        JSONObject payload = new JSONObject();
-        payload.put("model", "gemma3:1b");
-        payload.put("prompt", prompt);
-        payload.put("stream", true); // ¡Clave para activar el streaming!
-
-        // Crea la petición HTTP POST
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(OLLAMA_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                .build();
-
-        // Reinicia el estado de cancelación y actualiza la UI
-        isCancelled.set(false);
+        // Petición con streaming (stream: true); el JSON se construye en ChatRequest
+        ChatRequest request = ChatRequest.text(models.modelFor(ModelRegistry.Role.TEXT), prompt, conversation);
+
         setUiBusy("Generant resposta...");
+        conversations.submit(request, newBotBubbleSink(), new ChatTask.Listener() {
+            @Override
+            public void onStateChanged(ChatTask task, ChatTask.State state) {
+                if (state == ChatTask.State.REJECTED) appendToChat(QUEUE_FULL_MESSAGE, false);
+            }
 
-        // Prepara una burbuja vacía para el bot (se irá llenando con cada token)
-        Platform.runLater(() -> {
-            Label label = new Label("");
-            label.setWrapText(true);
-            label.setPadding(new Insets(5,10,5,10));
-            label.setStyle("-fx-background-color: #FFFFFF; -fx-background-radius: 10; -fx-text-fill: black;");
-            HBox hbox = new HBox(label);
-            hbox.setAlignment(Pos.CENTER_LEFT); // Mensajes del bot a la izquierda
-            chatBox.getChildren().add(hbox);
-        });
+            @Override
+            public void onModelError(ChatTask task, String message) {
+                appendToChat("[Error del modelo: " + message + "]", false);
+            }
 
-        // Envía la petición de forma asíncrona y procesa el stream
-        currentRequest = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
-                .thenApply(response -> {
-                    // Envía la tarea de lectura del stream a un hilo dedicado
-                    executorService.submit(() -> {
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body()))) {
-                            String line;
-                            // Lee línea por línea mientras no se cancele
-                            while ((line = reader.readLine()) != null && !isCancelled.get()) {
-                                if (line.trim().isEmpty()) continue; // Salta líneas vacías
-
-                                try {
-                                    // Cada línea es un JSON con un fragmento de respuesta
-                                    JSONObject chunk = new JSONObject(line);
-                                    String token = chunk.optString("response", ""); // Texto parcial
-                                    boolean done = chunk.optBoolean("done", false); // Indica fin de respuesta
-
-                                    // ACTUALIZACIÓN DE UI: debe ir en Platform.runLater()
-                                    Platform.runLater(() -> {
-                                        if (!chatBox.getChildren().isEmpty()) {
-                                            // Obtiene la última burbuja (la del bot)
-                                            HBox lastHBox = (HBox) chatBox.getChildren().get(chatBox.getChildren().size() - 1);
-                                            if (!lastHBox.getChildren().isEmpty()) {
-                                                Label lastLabel = (Label) lastHBox.getChildren().get(0);
-                                                String currentText = lastLabel.getText();
-                                                lastLabel.setText(currentText + token); // Añade el nuevo token
-                                            }
-                                        }
-                                        chatScroll.setVvalue(1.0); // Auto-scroll al final
-                                    });
-
-                                    if (done) break; // Termina si Ollama dice que ya no hay más
-                                } catch (Exception e) {
-                                    // Error al parsear un fragmento
-                                    Platform.runLater(() -> appendToChat("[Error en streaming: " + e.getMessage() + "]", false));
-                                    break;
-                                }
-                            }
-                        } catch (IOException e) {
-                            // Error de red (solo si no fue cancelado por el usuario)
-                            if (!isCancelled.get()) {
-                                Platform.runLater(() -> appendToChat("[Error de connexió]", false));
-                            }
-                        } finally {
-                            // Siempre restauramos la UI al finalizar (éxito, error o cancelación)
-                            cleanupAfterRequest();
-                        }
-                    });
-                    return response;
-                })
-                .exceptionally(e -> {
-                    // Error grave en la petición HTTP (ej: Ollama no responde)
-                    if (!isCancelled.get()) {
-                        Platform.runLater(() -> appendToChat("[Error en petició de text]", false));
-                    }
-                    cleanupAfterRequest();
-                    return null;
-                });
+            @Override
+            public void onFailure(ChatTask task, Exception e) {
+                // Error grave en la petición HTTP (ej: Ollama no responde, incluso tras los reintentos)
+                appendToChat(e instanceof OllamaUnavailableException
+                        ? "[" + e.getMessage() + "]"
+                        : "[Error en petició de text]", false);
+            }
+        });
     }
 
     // ================== GESTIÓN DE IMÁGENES ==================
@@ -201,10 +185,12 @@ public class ChatController {
         chooser.getExtensionFilters().add(
                 new FileChooser.ExtensionFilter("Imágenes", "*.png", "*.jpg", "*.jpeg", "*.bmp", "*.gif")
         );
-        File file = chooser.showOpenDialog(chatScroll.getScene().getWindow());
+        File file = chooser.showOpenDialog(chatList.getScene().getWindow());
         if (file != null) {
             selectedImage = file;
             lblImageName.setText(file.getName()); // Muestra el nombre en la UI
+            // Carga el modelo de imagen mientras se escribe el prompt (si no está ya cargado)
+            OllamaRouter.shared().warmUp(models.modelFor(ModelRegistry.Role.IMAGE));
         }
     }
 
@@ -229,157 +215,198 @@ public class ChatController {
         startImageCompleteRequest(selectedImage, prompt);
     }
 
+    /**
+     * Envía la imagen al modelo 'llava-phi3' sin streaming.
+     * La respuesta completa llega en un único objeto JSON, que se procesa con el mismo
+     * parser que el streaming y aparece de golpe en la burbuja del bot.
+     *
+     * Antes del envío, la imagen se reduce a la resolución del modelo (ImagePreprocessor).
+     * El cuerpo JSON (con la imagen en Base64) no se monta en memoria:
+     * ImageBodyPublisher lo genera a trozos mientras se envía.
+     */
     private void startImageCompleteRequest(File imageFile, String prompt) {
-        try {
-            // Lee la imagen y la convierte a Base64
-            byte[] bytes = Files.readAllBytes(imageFile.toPath());
-            String base64 = Base64.getEncoder().encodeToString(bytes);
-
-            // Construye el payload para Ollama
-            JSONObject payload = new JSONObject();
-            payload.put("model", "llava-phi3:latest");
-            payload.put("prompt", prompt);
-            payload.put("stream", false); // Respuesta completa, no streaming
-
-            // Añade la imagen en el campo "images"
-            JSONArray imagesArray = new JSONArray();
-            imagesArray.put(base64);
-            payload.put("images", imagesArray);
-
-            // Crea y envía la petición
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(OLLAMA_URL))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                    .build();
-
-            isCancelled.set(false);
-            setUiBusy("Thinking..."); // Mensaje requerido por el enunciado
-
-            currentRequest = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenApply(HttpResponse::body)
-                    .thenAccept(body -> {
-                        if (!isCancelled.get()) {
-                            try {
-                                JSONObject obj = new JSONObject(body);
-                                // Verifica si hay un error en la respuesta
-                                if (obj.has("error")) {
-                                    String errorMsg = obj.getString("error");
-                                    appendToChat("[Error del modelo: " + errorMsg + "]", false);
-                                } else {
-                                    String responseText = obj.optString("response", "");
-                                    appendToChat(responseText, false);
-                                }
-                            } catch (Exception e) {
-                                appendToChat("[Error al processar resposta d'imatge: " + e.getMessage() + "]", false);
-                            }
-                        }
-                        cleanupAfterRequest();
-                    })
-                    .exceptionally(e -> {
-                        if (!isCancelled.get()) {
-                            appendToChat("[Error durant petició d'imatge: " + e.getMessage() + "]", false);
-                        }
-                        cleanupAfterRequest();
-                        return null;
-                    });
-
-        } catch (IOException e) {
-            appendToChat("[No s'ha pogut llegir la imatge: " + e.getMessage() + "]", false);
-            cleanupAfterRequest();
-        }
+        setUiBusy("Thinking..."); // Mensaje requerido por el enunciado
+
+        // La imagen se reduce dentro del hilo de la tarea: no bloquea JavaFX
+        ChatRequest request = ChatRequest.image(models.modelFor(ModelRegistry.Role.IMAGE), prompt, imageFile.toPath(), imagePreprocessor,
+                conversation);
+        conversations.submit(request, newBotBubbleSink(), new ChatTask.Listener() {
+            @Override
+            public void onStateChanged(ChatTask task, ChatTask.State state) {
+                if (state == ChatTask.State.REJECTED) appendToChat(QUEUE_FULL_MESSAGE, false);
+            }
+
+            @Override
+            public void onModelError(ChatTask task, String message) {
+                appendToChat("[Error del modelo: " + message + "]", false);
+            }
+
+            @Override
+            public void onFailure(ChatTask task, Exception e) {
+                appendToChat("[Error durant petició d'imatge: " + e.getMessage() + "]", false);
+            }
+        });
     }
 
     // ================== CANCELACIÓN ==================
 
     /**
-     * Cancela la petición actual.
-     * Solo establece la bandera 'isCancelled'; el código de streaming/petición
-     * la comprueba periódicamente y se detiene.
-     * 
-     * NOTA: No se cancela el CompletableFuture porque el HttpClient de Java
-     * no permite cancelar fácilmente una conexión en curso. La bandera es suficiente.
+     * Cancela todas las peticiones en curso.
+     * Cada tarea cierra su conexión con Ollama al momento (ver ChatTask.cancel),
+     * tanto si está esperando la respuesta como si está leyendo el stream.
      */
     @FXML
     private void onStop() {
-        isCancelled.set(true);
-        appendToChat("[Petició cancel·lada per l'usuari]", false);
-        cleanupAfterRequest();
+        if (conversations.cancelAll() > 0) {
+            appendToChat("[Petició cancel·lada per l'usuari]", false);
+        }
+    }
+
+    // ================== NUEVA CONVERSACIÓN ==================
+
+    /**
+     * Empieza una conversación nueva: el modelo deja de recordar las preguntas anteriores.
+     * Las respuestas que aún estén en curso ya no cambian el historial (ver Conversation).
+     */
+    @FXML
+    private void onNewConversation() {
+        conversation.reset();
+        conversationId++;
+        appendToChat("[Nova conversa]", false);
     }
 
     // ================== GESTIÓN DE LA INTERFAZ ==================
 
     /**
-     * Desactiva botones y muestra estado de "ocupado" durante una petición.
+     * Muestra el estado de "ocupado" al lanzar una petición.
+     * Los botones de envío siguen activos: se pueden lanzar más peticiones en paralelo.
      * ¡Debe ejecutarse en el hilo de JavaFX! (por eso usa Platform.runLater)
      */
     private void setUiBusy(String msg) {
         Platform.runLater(() -> {
             btnStop.setDisable(false);
-            btnTextRequest.setDisable(true);
-            btnPickImage.setDisable(true);
-            btnSendImage.setDisable(true);
             progress.setVisible(true);
             status.setText(msg);
         });
     }
 
     /**
-     * Restaura la interfaz al estado normal tras finalizar una petición.
+     * Actualiza la interfaz cuando cambia el número de peticiones en curso o en cola.
+     * Cuando ya no queda ninguna, restaura el estado normal.
      */
-    private void cleanupAfterRequest() {
+    private void onLoadChanged(int running, int queued) {
+        int active = running + queued;
         Platform.runLater(() -> {
-            btnStop.setDisable(true);
-            btnTextRequest.setDisable(false);
-            btnPickImage.setDisable(false);
-            btnSendImage.setDisable(false);
-            status.setText("Idle");
-            progress.setVisible(false);
+            stats.setText(conversations.getMetrics().summary()); // Cambia cada vez que termina una petición
+            if (queued > 0) {
+                status.setText(running + " en curs · " + queued + " en cua...");
+            } else if (active == 0) {
+                btnStop.setDisable(true);
+                PromptCache cache = conversations.getCache();
+                status.setText(cache == null ? "Idle"
+                        : "Idle · cache: " + cache.getHits() + " encerts / " + cache.getMisses() + " errades");
+                progress.setVisible(false);
+            } else if (active > 1) {
+                status.setText(active + " peticions en curs...");
+            }
+        });
+    }
+
+    /**
+     * Crea un mensaje vacío para el bot y devuelve el TokenSink que lo irá llenando.
+     * El sink cambia el texto del mensaje como mucho una vez por frame;
+     * la celda que lo muestra (si está visible) se actualiza sola.
+     */
+    private TokenSink newBotBubbleSink() {
+        ChatMessage message = new ChatMessage(nextSeq.getAndIncrement(), "", false);
+        long conversationAtStart = conversationId;
+        Platform.runLater(() -> messages.add(message));
+        TokenSink sink = new TokenSink(text -> {
+            message.setText(text);
+            scrollToEnd(); // Auto-scroll al final (una vez por frame, no por token)
+        }, text -> {
+            // La respuesta se guarda una sola vez, ya completa
+            if (history != null && !text.isEmpty()) {
+                history.append(message.getSeq(), conversationAtStart, false, text);
+            }
         });
+        sink.start();
+        return sink;
     }
 
     /**
-     * Añade un mensaje al chat con estilo (usuario vs bot).
-     * 
+     * Añade un mensaje al chat (usuario vs bot).
+     *
      * REGLA DE ORO DE JAVAFX:
      * Cualquier modificación de la UI debe hacerse en el JavaFX Application Thread.
      * Por eso TODO va dentro de Platform.runLater().
      */
     private void appendToChat(String text, boolean isUser) {
+        long seq = nextSeq.getAndIncrement(); // Se asigna ya: el orden es el de las llamadas
         Platform.runLater(() -> {
-            Label label = new Label(text);
-            label.setWrapText(true);
-            label.setPadding(new Insets(5,10,5,10));
-
-            if (isUser) {
-                label.setStyle("-fx-background-color: #DCF8C6; -fx-background-radius: 10; -fx-text-fill: black;");
-            } else {
-                label.setStyle("-fx-background-color: #FFFFFF; -fx-background-radius: 10; -fx-text-fill: black;");
-            }
+            messages.add(new ChatMessage(seq, text, isUser));
+            if (history != null) history.append(seq, conversationId, isUser, text);
+            scrollToEnd(); // Desplaza al final automáticamente
+        });
+    }
 
-            HBox hbox = new HBox();
-            if (isUser) {
-                hbox.setAlignment(Pos.CENTER_RIGHT);
-                hbox.getChildren().add(label);
-            } else {
-                hbox.setAlignment(Pos.CENTER_LEFT);
-                hbox.getChildren().add(label);
+    /**
+     * Carga en segundo plano la página anterior del historial y la pone al principio de la lista.
+     * Solo en el hilo de JavaFX.
+     */
+    private void loadOlderMessages(boolean firstPage) {
+        if (history == null || !hasOlder || loadingOlder) return;
+        loadingOlder = true;
+        long before = oldestLoadedSeq;
+        int pageSize = ChatConfig.historyPageSize();
+
+        Thread.ofVirtual().start(() -> {
+            List<TranscriptStore.Row> rows;
+            try {
+                rows = history.loadBefore(before, pageSize);
+            } catch (SQLException e) {
+                System.err.println("No s'ha pogut llegir l'historial: " + e.getMessage());
+                rows = List.of();
             }
-
-            chatBox.getChildren().add(hbox);
-            chatScroll.setVvalue(1.0); // Desplaza al final automáticamente
+            List<ChatMessage> page = new ArrayList<>(rows.size());
+            for (TranscriptStore.Row row : rows) {
+                page.add(new ChatMessage(row.seq(), row.text(), row.user()));
+            }
+            boolean more = rows.size() == pageSize;
+
+            Platform.runLater(() -> {
+                if (!page.isEmpty()) {
+                    oldestLoadedSeq = page.get(0).getSeq();
+                    messages.addAll(0, page);
+                    // Mantiene a la vista lo que se estaba leyendo (o el final, en la primera carga)
+                    if (firstPage) scrollToEnd();
+                    else chatList.scrollTo(page.size());
+                }
+                hasOlder = more;
+                loadingOlder = false;
+            });
         });
     }
 
+    /**
+     * Muestra el último mensaje. Solo en el hilo de JavaFX.
+     */
+    private void scrollToEnd() {
+        if (!messages.isEmpty()) {
+            chatList.scrollTo(messages.size() - 1);
+        }
+    }
+
     // ================== LIMPIEZA AL CERRAR ==================
 
     /**
-     * Cierra el ExecutorService al terminar la aplicación.
-     * Evita fugas de hilos.
-     * 
-     * NOTA: Deberías llamar a este método desde el Main cuando se cierre la ventana.
+     * Cancela las peticiones en curso y cierra el executor de hilos virtuales.
+     * Llamado desde Main.stop() al cerrar la ventana.
      */
     public void shutdown() {
-        executorService.shutdownNow();
+        conversations.shutdown();
+        if (history != null) {
+            history.close(); // Escribe los mensajes que queden en cola
+        }
     }
-}
\ No newline at end of file
+}
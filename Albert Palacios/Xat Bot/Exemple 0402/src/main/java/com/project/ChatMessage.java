@@ -0,0 +1,47 @@
+package com.project;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
+/**
+ * Un mensaje del chat (del usuario o del bot).
+ *
+ * El historial es una lista de ChatMessage; la interfaz (ListView + ChatMessageCell)
+ * solo crea nodos para los mensajes visibles. Mientras llega una respuesta,
+ * el TokenSink va cambiando el texto del mensaje y la celda que lo muestra
+ * (si está en pantalla) se actualiza sola.
+ *
+ * 'seq' es el orden del mensaje en el historial (ver TranscriptStore).
+ */
+public final class ChatMessage {
+
+    private final long seq;
+    private final boolean user;
+    private final StringProperty text; // Solo se modifica en el hilo de JavaFX
+
+    public ChatMessage(long seq, String text, boolean user) {
+        this.seq = seq;
+        this.user = user;
+        this.text = new SimpleStringProperty(this, "text", text);
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public boolean isUser() {
+        return user;
+    }
+
+    public String getText() {
+        return text.get();
+    }
+
+    public void setText(String value) {
+        text.set(value);
+    }
+
+    public StringProperty textProperty() {
+        return text;
+    }
+}
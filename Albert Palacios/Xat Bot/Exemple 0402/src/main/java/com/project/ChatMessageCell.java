@@ -0,0 +1,53 @@
+package com.project;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+
+/**
+ * Celda del ListView del chat: una burbuja (Label dentro de un HBox alineado).
+ *
+ * El ListView solo crea las celdas que caben en pantalla y las reutiliza al hacer
+ * scroll: con 10.000 mensajes sigue habiendo unas pocas decenas de nodos.
+ * Por eso aquí no se crea nada en updateItem(), solo se cambia el mensaje enlazado.
+ */
+public final class ChatMessageCell extends ListCell<ChatMessage> {
+
+    private static final String USER_STYLE = "-fx-background-color: #DCF8C6; -fx-background-radius: 10; -fx-text-fill: black;";
+    private static final String BOT_STYLE = "-fx-background-color: #FFFFFF; -fx-background-radius: 10; -fx-text-fill: black;";
+
+    private final Label label = new Label();
+    private final HBox box = new HBox(label);
+
+    public ChatMessageCell(ListView<ChatMessage> list) {
+        label.setWrapText(true);
+        label.setPadding(new Insets(5, 10, 5, 10));
+        // La burbuja no pasa del 75% del ancho; sin esto el Label no haría salto de línea
+        label.maxWidthProperty().bind(list.widthProperty().multiply(0.75));
+
+        // Sin fondo ni resaltado de selección: solo se ve la burbuja
+        setStyle("-fx-background-color: transparent; -fx-padding: 4 15 4 15;");
+        setPrefWidth(0); // Evita la barra de scroll horizontal
+    }
+
+    @Override
+    protected void updateItem(ChatMessage message, boolean empty) {
+        super.updateItem(message, empty);
+        label.textProperty().unbind();
+
+        if (empty || message == null) {
+            label.setText(null);
+            setGraphic(null);
+            return;
+        }
+
+        // Enlazado: si el mensaje cambia (respuesta en streaming) la celda se repinta sola
+        label.textProperty().bind(message.textProperty());
+        label.setStyle(message.isUser() ? USER_STYLE : BOT_STYLE);
+        box.setAlignment(message.isUser() ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT); // Usuario a la derecha, bot a la izquierda
+        setGraphic(box);
+    }
+}
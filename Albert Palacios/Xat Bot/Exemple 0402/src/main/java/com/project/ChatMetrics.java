@@ -0,0 +1,91 @@
+package com.project;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Métricas de las peticiones a Ollama, agrupadas por modelo.
+ *
+ * Cada ChatTask mide sus tiempos (Sample) y, al terminar, ConversationManager
+ * los suma aquí. Cada modelo se publica por JMX la primera vez que se usa
+ * (com.project:type=ChatMetrics,model="gemma3:1b"), así se pueden comparar
+ * modelos con jconsole o VisualVM sin tocar la aplicación.
+ */
+public class ChatMetrics {
+
+    /**
+     * Medidas de una petición, en nanosegundos (-1 = no aplica o no se sabe).
+     *
+     * @param queueNanos      tiempo esperando en la cola (RequestScheduler)
+     * @param headersNanos    desde el envío hasta las cabeceras de la respuesta (conexión incluida)
+     * @param firstTokenNanos desde el envío hasta el primer token (TTFT)
+     * @param totalNanos      desde el envío hasta el final de la respuesta
+     * @param tokens          fragmentos de texto recibidos
+     * @param evalCount       "eval_count" de Ollama: tokens generados
+     * @param evalNanos       "eval_duration" de Ollama: tiempo generando
+     */
+    public record Sample(String model, ChatTask.State state, boolean cached,
+                         long queueNanos, long headersNanos, long firstTokenNanos, long totalNanos,
+                         int tokens, long evalCount, long evalNanos) {
+
+        /**
+         * Velocidad de generación. Usa los datos de Ollama si los hay; si no,
+         * los tokens recibidos entre el primero y el último.
+         */
+        public double tokensPerSecond() {
+            if (evalCount > 0 && evalNanos > 0) {
+                return evalCount * 1e9 / evalNanos;
+            }
+            long streaming = totalNanos - firstTokenNanos;
+            if (tokens > 1 && firstTokenNanos >= 0 && streaming > 0) {
+                return (tokens - 1) * 1e9 / streaming;
+            }
+            return -1;
+        }
+    }
+
+    private final Map<String, ModelMetrics> models = new ConcurrentHashMap<>();
+    private final boolean jmx;
+
+    public ChatMetrics(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    public void record(Sample sample) {
+        models.computeIfAbsent(sample.model(), this::create).record(sample);
+    }
+
+    public ModelMetrics get(String model) {
+        return models.get(model);
+    }
+
+    /**
+     * Una línea por modelo usado, para el panel de estadísticas.
+     */
+    public String summary() {
+        return models.values().stream()
+                .sorted(Comparator.comparing(ModelMetrics::getModel))
+                .map(ModelMetrics::summary)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private ModelMetrics create(String model) {
+        ModelMetrics metrics = new ModelMetrics(model);
+        if (jmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("com.project:type=ChatMetrics,model=" + ObjectName.quote(model));
+                if (!server.isRegistered(name)) server.registerMBean(metrics, name);
+            } catch (JMException e) {
+                System.err.println("No s'han pogut publicar les mètriques per JMX: " + e.getMessage());
+            }
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,162 @@
+package com.project;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Descripción de una petición a /api/generate: modelo, prompt y, opcionalmente, una imagen.
+ *
+ * La petición HTTP no se construye hasta que la tarea empieza (toHttpRequest),
+ * así el trabajo previo (reducir la imagen, calcular su hash) se hace en el hilo
+ * de la tarea y no en el de JavaFX.
+ *
+ * Si la petición pertenece a una Conversation, se envía el "context" de la
+ * respuesta anterior y, al terminar, se guarda el nuevo.
+ */
+public class ChatRequest {
+
+    private final String model;
+    private final String prompt;
+    private final boolean stream;
+    private final Path image;                       // null si es una petición de solo texto
+    private final ImagePreprocessor preprocessor;   // null si es una petición de solo texto
+    private final Conversation conversation;        // null si la petición no tiene historial
+
+    // Context de la conversación en el momento de enviar (ver prepare())
+    private int[] context;
+    private long generation;
+
+    // Resultado de prepare() (solo para imágenes)
+    private Path preparedImage;
+    private String imageHash = "";
+
+    private ChatRequest(String model, String prompt, boolean stream, Path image,
+                        ImagePreprocessor preprocessor, Conversation conversation) {
+        this.model = model;
+        this.prompt = prompt;
+        this.stream = stream;
+        this.image = image;
+        this.preprocessor = preprocessor;
+        this.conversation = conversation;
+    }
+
+    /**
+     * Petición de texto con streaming.
+     */
+    public static ChatRequest text(String model, String prompt, Conversation conversation) {
+        return new ChatRequest(model, prompt, true, null, null, conversation);
+    }
+
+    /**
+     * Petición con imagen, sin streaming (respuesta completa).
+     */
+    public static ChatRequest image(String model, String prompt, Path image, ImagePreprocessor preprocessor,
+                                    Conversation conversation) {
+        return new ChatRequest(model, prompt, false, image, preprocessor, conversation);
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public boolean hasImage() {
+        return image != null;
+    }
+
+    /**
+     * Toma el context actual de la conversación y reduce la imagen (si hay).
+     * Puede tardar: se llama desde el hilo de la tarea.
+     */
+    public void prepare() throws IOException {
+        if (conversation != null) {
+            generation = conversation.getGeneration();
+            context = conversation.getContext(model);
+        }
+        if (image == null || preparedImage != null) return;
+        ImagePreprocessor.PreparedImage prepared = preprocessor.prepare(image);
+        preparedImage = prepared.path();
+        imageHash = prepared.hash();
+    }
+
+    /**
+     * Guarda en la conversación el context devuelto por Ollama.
+     */
+    public void complete(int[] newContext) {
+        if (conversation != null) {
+            conversation.update(model, newContext, generation);
+        }
+    }
+
+    /**
+     * Clave para la caché de respuestas: modelo, prompt, hash de la imagen y opciones
+     * (incluido el context: la misma pregunta en otro punto de la conversación es otra petición).
+     * Llamar después de prepare().
+     */
+    public String cacheKey() {
+        String contextKey = context == null ? "" : contextHash(context);
+        return model + '\u0000' + prompt + '\u0000' + imageHash + '\u0000' + "stream=" + stream + ";context=" + contextKey;
+    }
+
+    /**
+     * SHA-256 del context entero: con un hash de 32 bits, dos conversaciones distintas
+     * podrían compartir clave y recibir la respuesta de la otra (también desde la caché en disco).
+     */
+    private static String contextHash(int[] context) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Todas las JVM incluyen SHA-256
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(context.length * Integer.BYTES);
+        buffer.asIntBuffer().put(context);
+        digest.update(buffer);
+        return context.length + ":" + HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Construye la petición HTTP para el endpoint dado. Llamar después de prepare().
+     */
+    public HttpRequest toHttpRequest(URI endpoint, Duration timeout) throws IOException {
+        JSONObject payload = new JSONObject();
+        payload.put("model", model);
+        payload.put("prompt", prompt);
+        payload.put("stream", stream);
+        payload.put("keep_alive", ChatConfig.keepAlive(model).toSeconds() + "s"); // Cada uso alarga el tiempo que sigue cargado
+        if (context != null) {
+            payload.put("context", new JSONArray(context)); // Ollama continúa desde aquí (reutiliza su caché KV)
+        }
+
+        HttpRequest.BodyPublisher body;
+        if (image != null) {
+            // El JSON con la imagen en Base64 se genera a trozos durante el envío
+            body = ImageBodyPublisher.of(payload, preparedImage != null ? preparedImage : image);
+        } else {
+            body = HttpRequest.BodyPublishers.ofString(payload.toString());
+        }
+        return HttpRequest.newBuilder()
+                .uri(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(body)
+                .build();
+    }
+}
@@ -0,0 +1,368 @@
+package com.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Una petición a Ollama con su propio ciclo de vida.
+ *
+ * Cada tarea tiene:
+ * - Su propia bandera de cancelación (cancelar una no afecta a las demás)
+ * - Su propia burbuja de salida (el TokenSink donde escribe los tokens)
+ * - Su propio estado: PENDING (en cola) → RUNNING → DONE / CANCELLED / FAILED,
+ *   o REJECTED si la cola estaba llena (ver RequestScheduler)
+ *
+ * run() es bloqueante: está pensado para ejecutarse en un hilo virtual,
+ * donde esperar al socket no ocupa ningún hilo del sistema.
+ *
+ * cancel() no se limita a marcar una bandera: cancela el CompletableFuture del
+ * intercambio HTTP, cierra el stream del body y despierta al hilo lector.
+ * Así la conexión se cierra al momento y Ollama deja de generar.
+ *
+ * Los fallos de conexión se reintentan (con espera exponencial) mientras no haya
+ * llegado ningún token, y cuentan para el cortacircuitos del cliente. Toda la
+ * petición tiene un plazo máximo (ChatConfig.requestDeadline).
+ *
+ * Al terminar, getMetrics() devuelve los tiempos medidos (cola, cabeceras,
+ * primer token, total) y las estadísticas que envía Ollama.
+ */
+public class ChatTask implements Runnable {
+
+    public enum State { PENDING, RUNNING, DONE, CANCELLED, FAILED, REJECTED }
+
+    /**
+     * Eventos de la tarea. Se llaman desde el hilo de la tarea (no desde JavaFX).
+     */
+    public interface Listener {
+        default void onStateChanged(ChatTask task, State state) {}
+        void onModelError(ChatTask task, String message); // Ollama ha respondido con {"error": ...}
+        void onFailure(ChatTask task, Exception e);       // Error de red / HTTP
+    }
+
+    private final OllamaRouter router; // Elige el servidor Ollama en cada intento
+    private final ChatRequest request;
+    private final PromptCache cache; // null si la caché está desactivada
+    private final TokenSink sink;
+    private final Listener listener;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private volatile boolean timedOut; // Ha vencido el plazo (ChatConfig.requestDeadline)
+    private volatile State state = State.PENDING;
+    private boolean modelError;        // Ollama ha respondido con {"error": ...} (solo hilo de la tarea)
+
+    // --- Recursos a liberar al cancelar (los publica el hilo de la tarea) ---
+    private volatile Thread runner;                                  // Hilo virtual que ejecuta run()
+    private volatile CompletableFuture<HttpResponse<InputStream>> exchange; // Petición HTTP en curso
+    private volatile InputStream body;                               // Body de la respuesta
+
+    // --- Medidas (ver ChatMetrics.Sample); las escribe el hilo de la tarea ---
+    private final long createdNanos = System.nanoTime();
+    private long startNanos = -1;      // Empieza run(): sale de la cola
+    private long sentNanos = -1;       // Se envía la petición HTTP
+    private long headersNanos = -1;
+    private long firstTokenNanos = -1;
+    private int tokens;
+    private boolean cached;
+    private NdjsonStreamParser parser;
+    private volatile ChatMetrics.Sample metrics;
+
+    public ChatTask(OllamaRouter router, ChatRequest request, PromptCache cache, TokenSink sink, Listener listener) {
+        this.router = router;
+        this.request = request;
+        this.cache = cache;
+        this.sink = sink;
+        this.listener = listener;
+    }
+
+    public ChatRequest getRequest() {
+        return request;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Medidas de la petición, o null si aún no ha terminado.
+     */
+    public ChatMetrics.Sample getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Cancela la tarea y aborta el intercambio HTTP.
+     * Se puede llamar desde cualquier hilo; el efecto es inmediato aunque el
+     * hilo lector esté bloqueado esperando bytes del socket.
+     * Devuelve false si ya estaba cancelada o había terminado.
+     */
+    public boolean cancel() {
+        if (state != State.PENDING && state != State.RUNNING) return false;
+        if (!cancelled.compareAndSet(false, true)) return false;
+
+        CompletableFuture<?> pending = exchange;
+        if (pending != null) {
+            pending.cancel(true); // Aborta la petición si aún no han llegado las cabeceras
+        }
+        closeBody();
+        Thread thread = runner;
+        if (thread != null) {
+            thread.interrupt(); // Despierta un read() bloqueado
+        }
+        return true;
+    }
+
+    /**
+     * Ha vencido el plazo de la petición: se aborta igual que al cancelar,
+     * pero termina como FAILED.
+     */
+    private void expire() {
+        timedOut = true;
+        cancel();
+    }
+
+    /**
+     * Descarta la tarea sin ejecutarla (la cola de peticiones estaba llena).
+     */
+    void reject() {
+        if (state == State.PENDING) finish(State.REJECTED);
+    }
+
+    private void closeBody() {
+        InputStream in = body;
+        if (in == null) return;
+        try {
+            in.close(); // Cierra la conexión: Ollama detecta la desconexión y para de generar
+        } catch (IOException ignored) {
+            // Ya estaba cerrada
+        }
+    }
+
+    @Override
+    public void run() {
+        startNanos = System.nanoTime();
+        if (cancelled.get()) {
+            finish(State.CANCELLED);
+            return;
+        }
+        setState(State.RUNNING);
+
+        // Respuesta completa, solo si hay que guardarla en la caché
+        StringBuilder answer = cache != null ? new StringBuilder() : null;
+
+        NdjsonStreamParser.Listener events = new NdjsonStreamParser.Listener() {
+            @Override
+            public void onToken(String token) {
+                if (tokens++ == 0) firstTokenNanos = System.nanoTime();
+                sink.append(token);
+                if (answer != null) answer.append(token);
+            }
+
+            @Override
+            public void onDone() {
+                // El bucle de lectura se detiene con parser.isDone()
+            }
+
+            @Override
+            public void onError(String message) {
+                modelError = true;
+                listener.onModelError(ChatTask.this, message);
+            }
+        };
+
+        runner = Thread.currentThread();
+        // Plazo para toda la petición: reintentos y lectura de la respuesta incluidos
+        ScheduledFuture<?> deadline = router.scheduler().schedule(this::expire,
+                ChatConfig.requestDeadline().toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            request.prepare(); // Reduce la imagen (si hay) y calcula su hash
+
+            String cacheKey = cache != null ? request.cacheKey() : null;
+            PromptCache.Entry cached = cacheKey != null ? cache.get(cacheKey) : null;
+            if (cached != null) {
+                // Acierto: sin llamar a Ollama; la respuesta se pinta a trozos, frame a frame, como si llegara del modelo
+                this.cached = true;
+                sink.replay(cached.text(), ChatConfig.cacheReplayCharsPerFrame());
+                request.complete(cached.context());
+                finish(State.DONE);
+                return;
+            }
+
+            // Reintentos con espera exponencial, solo mientras no haya llegado ningún token:
+            // después, repetir la petición duplicaría el texto de la burbuja.
+            // Cada intento vuelve a elegir servidor: si uno ha caído, el siguiente va a otro
+            int maxAttempts = Math.max(1, ChatConfig.retryAttempts());
+            for (int attempt = 1; ; attempt++) {
+                parser = new NdjsonStreamParser(events);
+                OllamaClient client = router.acquire(request.getModel());
+                boolean ok = false;
+                try {
+                    exchangeOnce(client, parser);
+                    client.breaker().onSuccess();
+                    ok = true;
+                    break;
+                } catch (IOException e) {
+                    if (cancelled.get()) throw e;
+                    if (isConnectFailure(e)) client.breaker().onFailure();
+                    if (!isRetryable(e) || tokens > 0 || attempt >= maxAttempts) throw e;
+                } finally {
+                    router.release(client, request.getModel(), ok);
+                }
+                Thread.sleep(backoffMillis(attempt));
+            }
+
+            if (parser.isDone() && !modelError && !cancelled.get()) {
+                int[] context = parser.getContext();
+                request.complete(context); // La siguiente pregunta de la conversación continúa desde aquí
+                if (cacheKey != null) cache.put(cacheKey, new PromptCache.Entry(answer.toString(), context));
+            }
+            if (cancelled.get()) {
+                finishInterrupted();
+            } else {
+                finish(State.DONE);
+            }
+        } catch (InterruptedException | CancellationException e) {
+            finishInterrupted();
+        } catch (IOException | RuntimeException e) {
+            if (cancelled.get()) {
+                finishInterrupted();
+            } else {
+                listener.onFailure(this, e);
+                finish(State.FAILED);
+            }
+        } finally {
+            deadline.cancel(false);
+            runner = null;
+            Thread.interrupted(); // Limpia la posible interrupción de cancel()
+        }
+    }
+
+    /**
+     * Un intento: envía la petición y lee la respuesta entera.
+     * Lanza OllamaUnavailableException si Ollama está ocupado o corta la respuesta.
+     */
+    private void exchangeOnce(OllamaClient client, NdjsonStreamParser parser) throws IOException, InterruptedException {
+        if (!client.breaker().allowRequest()) {
+            throw new OllamaUnavailableException("Ollama no respon; es torna a comprovar automàticament", false);
+        }
+
+        HttpRequest httpRequest = request.toHttpRequest(client.generateUri(), client.requestTimeout());
+        if (sentNanos < 0) sentNanos = System.nanoTime(); // Los tiempos cuentan desde el primer intento
+        exchange = client.http().sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+        if (cancelled.get()) exchange.cancel(true); // cancel() llegó antes de publicar el future
+
+        HttpResponse<InputStream> response;
+        try {
+            response = exchange.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause);
+        }
+        headersNanos = System.nanoTime();
+
+        body = response.body();
+        if (cancelled.get()) closeBody(); // cancel() llegó antes de publicar el body
+
+        try (InputStream in = body) {
+            int status = response.statusCode();
+            if (status == 502 || status == 503 || status == 504) {
+                // Ollama ocupado o arrancando: el body no interesa
+                throw new OllamaUnavailableException("Ollama està ocupat (HTTP " + status + ")", true);
+            }
+            byte[] buffer = new byte[8192]; // Buffer reutilizado para todo el stream
+            int read;
+            while (!cancelled.get() && !parser.isDone() && (read = in.read(buffer)) != -1) {
+                parser.feed(buffer, 0, read);
+            }
+        }
+        if (!parser.isDone() && !modelError && !cancelled.get()) {
+            throw new OllamaUnavailableException("La connexió s'ha tallat abans d'acabar la resposta", true);
+        }
+    }
+
+    /**
+     * Fallos que vale la pena reintentar: Ollama no acepta conexiones, está ocupado
+     * o ha cortado la respuesta. Un timeout esperando la respuesta no: Ollama está
+     * ahí pero tarda, y repetir la petición solo añadiría más trabajo.
+     */
+    private static boolean isRetryable(IOException e) {
+        if (e instanceof OllamaUnavailableException unavailable) return unavailable.isRetryable();
+        if (e instanceof HttpConnectTimeoutException) return true;
+        return !(e instanceof HttpTimeoutException);
+    }
+
+    /**
+     * Fallos que cuentan para el cortacircuitos: el servidor no acepta la conexión
+     * o no la establece a tiempo. Un 503 o una respuesta cortada no: el servidor
+     * está vivo, y abrir el circuito cortaría también las peticiones que sí atiende.
+     */
+    private static boolean isConnectFailure(IOException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException || t instanceof HttpConnectTimeoutException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Espera exponencial (base, 2·base, 4·base... hasta el máximo) con una parte
+     * aleatoria, para que varias tareas no reintenten todas a la vez.
+     */
+    private static long backoffMillis(int attempt) {
+        long base = ChatConfig.retryBaseDelay().toMillis();
+        long cap = Math.min(ChatConfig.retryMaxDelay().toMillis(), base << Math.min(attempt - 1, 20));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    /**
+     * La tarea se ha interrumpido: por el usuario (CANCELLED) o por el plazo (FAILED).
+     */
+    private void finishInterrupted() {
+        if (timedOut) {
+            listener.onFailure(this, new HttpTimeoutException("S'ha superat el temps màxim de la petició"));
+            finish(State.FAILED);
+        } else {
+            finish(State.CANCELLED);
+        }
+    }
+
+    private void finish(State finalState) {
+        sink.close(); // Pinta lo que quede en la burbuja y para su timer
+        metrics = measure(finalState);
+        setState(finalState);
+    }
+
+    private ChatMetrics.Sample measure(State finalState) {
+        long end = System.nanoTime();
+        return new ChatMetrics.Sample(request.getModel(), finalState, cached,
+                startNanos >= 0 ? startNanos - createdNanos : -1,
+                since(sentNanos, headersNanos), since(sentNanos, firstTokenNanos), since(sentNanos, end),
+                tokens,
+                parser != null ? parser.getEvalCount() : -1,
+                parser != null ? parser.getEvalDuration() : -1);
+    }
+
+    private static long since(long from, long to) {
+        return from >= 0 && to >= 0 ? to - from : -1;
+    }
+
+    private void setState(State newState) {
+        state = newState;
+        listener.onStateChanged(this, newState);
+    }
+}
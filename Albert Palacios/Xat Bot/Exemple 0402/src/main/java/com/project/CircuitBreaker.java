@@ -0,0 +1,113 @@
+package com.project;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Cortacircuitos para un servidor Ollama.
+ *
+ * Tras varios fallos de conexión seguidos (Ollama reiniciando, cambiando de
+ * modelo...) el circuito se abre: las peticiones fallan al momento en lugar de
+ * esperar cada una su timeout. Mientras está abierto, se comprueba el servidor
+ * en segundo plano cada 'probeInterval'; en cuanto responde, se cierra.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN }
+
+    /**
+     * Recibe los cambios de estado (desde cualquier hilo).
+     */
+    public interface Listener {
+        void onStateChanged(State state);
+    }
+
+    private final int failureThreshold;
+    private final Duration probeInterval;
+    private final ScheduledExecutorService scheduler;
+    private final Supplier<CompletableFuture<Boolean>> probe; // true si el servidor responde
+    private final AtomicBoolean probing = new AtomicBoolean(); // Hay una comprobación en curso
+
+    private State state = State.CLOSED;  // Protegido por 'this'
+    private int consecutiveFailures;
+    private ScheduledFuture<?> probeTask;
+    private volatile Listener listener;
+
+    public CircuitBreaker(int failureThreshold, Duration probeInterval, ScheduledExecutorService scheduler,
+                          Supplier<CompletableFuture<Boolean>> probe) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.probeInterval = probeInterval;
+        this.scheduler = scheduler;
+        this.probe = probe;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Indica si se puede intentar una petición (el circuito está cerrado).
+     */
+    public synchronized boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * El servidor ha respondido: se olvidan los fallos y, si estaba abierto, se cierra.
+     */
+    public void onSuccess() {
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state == State.CLOSED) return;
+            state = State.CLOSED;
+            if (probeTask != null) probeTask.cancel(false);
+            probeTask = null;
+        }
+        notifyListener(State.CLOSED);
+    }
+
+    /**
+     * Fallo de conexión (no cuenta un error del modelo ni una cancelación).
+     */
+    public void onFailure() {
+        synchronized (this) {
+            if (state == State.OPEN || ++consecutiveFailures < failureThreshold) return;
+            state = State.OPEN;
+            long interval = probeInterval.toMillis();
+            probeTask = scheduler.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        notifyListener(State.OPEN);
+    }
+
+    private void probe() {
+        // Sin esperar en el hilo del scheduler (también lleva los plazos de las tareas):
+        // si la comprobación anterior aún no ha acabado, se salta esta
+        if (!probing.compareAndSet(false, true)) return;
+        CompletableFuture<Boolean> check;
+        try {
+            check = probe.get().copy().orTimeout(probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            probing.set(false);
+            return;
+        }
+        check.whenComplete((ok, e) -> probing.set(false))
+                .thenAccept(ok -> {
+                    if (Boolean.TRUE.equals(ok)) onSuccess();
+                });
+        // Si sigue sin responder, se vuelve a probar en el siguiente intervalo
+    }
+
+    private void notifyListener(State newState) {
+        Listener l = listener;
+        if (l != null) l.onStateChanged(newState);
+    }
+}
@@ -0,0 +1,53 @@
+package com.project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de una conversación con Ollama.
+ *
+ * /api/generate devuelve, en el último objeto del stream, un array "context":
+ * son los tokens de toda la conversación tal como los tiene el modelo.
+ * Si se envía en la siguiente petición, Ollama reutiliza su caché KV y solo
+ * tiene que procesar el prompt nuevo, en lugar de volver a leer todo el historial.
+ *
+ * El context es propio de cada modelo (los tokens de gemma3 no sirven a llava),
+ * así que se guarda uno por modelo.
+ */
+public class Conversation {
+
+    private final Map<String, int[]> contexts = new ConcurrentHashMap<>();
+    private volatile long generation; // Cambia con cada reset()
+
+    /**
+     * Context actual para el modelo, o null si aún no hay ninguno.
+     */
+    public int[] getContext(String model) {
+        return contexts.get(model);
+    }
+
+    /**
+     * Número de la conversación actual. Una petición lo guarda al empezar para
+     * saber, al terminar, si el usuario ha empezado otra conversación mientras tanto.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Guarda el context devuelto por Ollama al terminar una respuesta.
+     * Se ignora si la petición pertenecía a una conversación anterior.
+     */
+    public synchronized void update(String model, int[] context, long requestGeneration) {
+        if (context == null || context.length == 0 || requestGeneration != generation) return;
+        contexts.put(model, context);
+    }
+
+    /**
+     * Empieza una conversación nueva: el modelo olvida todo lo anterior.
+     */
+    public synchronized void reset() {
+        generation++;
+        contexts.clear();
+    }
+}
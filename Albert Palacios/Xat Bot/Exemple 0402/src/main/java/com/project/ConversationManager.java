@@ -0,0 +1,133 @@
+package com.project;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Lanza y sigue las peticiones en curso a Ollama.
+ *
+ * Cada petición es una ChatTask independiente que se ejecuta en su propio
+ * hilo virtual, así varias respuestas pueden llegar a la vez sin que una
+ * respuesta lenta bloquee a las demás.
+ *
+ * El RequestScheduler decide cuándo empieza cada tarea: limita las peticiones
+ * simultáneas y deja esperando (o rechaza) las que no caben.
+ */
+public class ConversationManager {
+
+    /**
+     * Recibe el número de peticiones en curso y en cola cada vez que cambia.
+     */
+    public interface LoadListener {
+        void onLoadChanged(int running, int queued);
+    }
+
+    private final OllamaRouter router;   // Servidores Ollama (cada uno con su pool de conexiones)
+    private final PromptCache cache; // null si la caché está desactivada
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final RequestScheduler scheduler;
+    private final Set<ChatTask> active = ConcurrentHashMap.newKeySet(); // En cola o en curso
+    private final ChatMetrics metrics = new ChatMetrics(true);           // Tiempos por modelo (también por JMX)
+    private final LoadListener onLoadChanged;
+
+    public ConversationManager(OllamaRouter router, PromptCache cache, LoadListener onLoadChanged) {
+        this(router, cache, onLoadChanged, RequestScheduler::fromConfig);
+    }
+
+    /**
+     * Con un planificador propio (por ejemplo, otros límites en una prueba de carga),
+     * creado sobre el ejecutor de hilos virtuales del gestor.
+     */
+    public ConversationManager(OllamaRouter router, PromptCache cache, LoadListener onLoadChanged,
+                               Function<Executor, RequestScheduler> schedulerFactory) {
+        this.router = router;
+        this.cache = cache;
+        this.onLoadChanged = onLoadChanged;
+        this.scheduler = schedulerFactory.apply(executor);
+    }
+
+    /**
+     * Crea una tarea para la petición y la pasa al planificador, que la lanza
+     * en un hilo virtual nuevo cuando haya sitio.
+     * Si la cola está llena, la tarea termina enseguida en estado REJECTED.
+     */
+    public ChatTask submit(ChatRequest request, TokenSink sink, ChatTask.Listener listener) {
+        ChatTask task = new ChatTask(router, request, cache, sink, new ChatTask.Listener() {
+            @Override
+            public void onStateChanged(ChatTask t, ChatTask.State state) {
+                if (state != ChatTask.State.PENDING && state != ChatTask.State.RUNNING) {
+                    active.remove(t);
+                    scheduler.finished(t); // Deja sitio a la siguiente de la cola
+                    if (t.getMetrics() != null) metrics.record(t.getMetrics());
+                    notifyLoad();
+                }
+                listener.onStateChanged(t, state);
+            }
+
+            @Override
+            public void onModelError(ChatTask t, String message) {
+                listener.onModelError(t, message);
+            }
+
+            @Override
+            public void onFailure(ChatTask t, Exception e) {
+                listener.onFailure(t, e);
+            }
+        });
+
+        active.add(task);
+        if (scheduler.submit(task)) {
+            notifyLoad();
+        } else {
+            task.reject();
+        }
+        return task;
+    }
+
+    /**
+     * Cancela todas las peticiones, en curso y en cola.
+     * Devuelve cuántas se han cancelado (0 si no había ninguna pendiente).
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        for (ChatTask task : active) {
+            if (task.cancel()) cancelled++;
+        }
+        // Las de la cola terminan al momento (run() ve la cancelación y no hace nada)
+        for (ChatTask task : scheduler.removeQueued()) {
+            executor.execute(task);
+        }
+        return cancelled;
+    }
+
+    private void notifyLoad() {
+        onLoadChanged.onLoadChanged(scheduler.runningCount(), scheduler.queuedCount());
+    }
+
+    /**
+     * Caché de respuestas, o null si está desactivada.
+     */
+    public PromptCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Métricas de las peticiones terminadas.
+     */
+    public ChatMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+}
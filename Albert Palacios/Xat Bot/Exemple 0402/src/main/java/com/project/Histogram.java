@@ -0,0 +1,72 @@
+package com.project;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores positivos con cubetas fijas en escala 1-2-5
+ * (1, 2, 5, 10, 20, 50... hasta 5.000.000).
+ *
+ * Ocupa siempre lo mismo, record() no bloquea y los percentiles son aproximados:
+ * devuelven el límite superior de la cubeta donde cae el valor. Para comparar
+ * modelos o detectar una regresión es suficiente.
+ */
+public class Histogram {
+
+    private static final long[] BOUNDS = buildBounds();
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1); // La última: por encima del máximo
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    private static long[] buildBounds() {
+        long[] bounds = new long[21];
+        long scale = 1;
+        for (int i = 0; i < bounds.length; i += 3) {
+            bounds[i] = scale;
+            bounds[i + 1] = 2 * scale;
+            bounds[i + 2] = 5 * scale;
+            scale *= 10;
+        }
+        return bounds;
+    }
+
+    public void record(double value) {
+        if (value < 0 || Double.isNaN(value)) return;
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    private static int bucketOf(double value) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (value <= BOUNDS[i]) return i;
+        }
+        return BOUNDS.length;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Percentil aproximado (p entre 0 y 100), o 0 si no hay datos.
+     */
+    public long percentile(double p) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return i < BOUNDS.length ? BOUNDS[i] : Long.MAX_VALUE;
+        }
+        return BOUNDS[BOUNDS.length - 1];
+    }
+}
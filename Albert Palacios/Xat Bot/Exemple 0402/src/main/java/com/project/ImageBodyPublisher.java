@@ -0,0 +1,179 @@
+package com.project;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cuerpo de la petición multimodal de Ollama, generado en streaming:
+ *
+ *   {"model":"...","prompt":"...","stream":false,...,"images":["<base64 de la imagen>"]}
+ *
+ * En vez de leer la imagen entera, pasarla a Base64 y montar el JSON en memoria
+ * (cuatro copias completas de la imagen), la imagen se lee a trozos desde un
+ * FileChannel a un buffer directo (fuera del heap) y cada trozo se codifica en
+ * Base64 justo cuando el HttpClient pide más bytes para enviar.
+ *
+ * El fichero solo está abierto mientras se lee cada trozo: si la petición se
+ * cancela a mitad del envío, el HttpClient no cierra el InputStream, y un
+ * FileChannel abierto durante todo el envío se quedaría sin cerrar.
+ *
+ * La memoria usada es la misma para una imagen de 100 KB que para una de 50 MB.
+ */
+public final class ImageBodyPublisher {
+
+    // Múltiplo de 3: así ningún trozo intermedio necesita padding ('=')
+    private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private ImageBodyPublisher() {}
+
+    /**
+     * Crea el BodyPublisher para enviar 'image' junto con los campos de 'payload'
+     * (model, prompt, stream...). El campo "images" se añade al final.
+     * La longitud total se calcula por adelantado, así que no hace falta chunked encoding.
+     */
+    public static HttpRequest.BodyPublisher of(JSONObject payload, Path image) throws IOException {
+        String fields = payload.toString();
+        fields = fields.substring(0, fields.length() - 1); // Quita la '}' final
+        byte[] prefix = (fields + (payload.isEmpty() ? "" : ",") + "\"images\":[\"").getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = "\"]}".getBytes(StandardCharsets.UTF_8);
+
+        long length = prefix.length + base64Length(Files.size(image)) + suffix.length;
+        HttpRequest.BodyPublisher stream =
+                HttpRequest.BodyPublishers.ofInputStream(() -> new EnvelopeStream(prefix, image, suffix));
+        return HttpRequest.BodyPublishers.fromPublisher(stream, length);
+    }
+
+    private static long base64Length(long size) {
+        return (size + 2) / 3 * 4;
+    }
+
+    /**
+     * Base64 estándar (con padding) de los bytes restantes de 'src' en 'dst'.
+     * Devuelve el número de bytes escritos.
+     */
+    private static int encode(ByteBuffer src, byte[] dst) {
+        int n = 0;
+        while (src.remaining() >= 3) {
+            int bits = (src.get() & 0xFF) << 16 | (src.get() & 0xFF) << 8 | (src.get() & 0xFF);
+            dst[n++] = ALPHABET[(bits >>> 18) & 0x3F];
+            dst[n++] = ALPHABET[(bits >>> 12) & 0x3F];
+            dst[n++] = ALPHABET[(bits >>> 6) & 0x3F];
+            dst[n++] = ALPHABET[bits & 0x3F];
+        }
+        int rest = src.remaining();
+        if (rest > 0) {
+            // Último trozo del fichero: 1 o 2 bytes sueltos
+            int bits = (src.get() & 0xFF) << 16 | (rest == 2 ? (src.get() & 0xFF) << 8 : 0);
+            dst[n++] = ALPHABET[(bits >>> 18) & 0x3F];
+            dst[n++] = ALPHABET[(bits >>> 12) & 0x3F];
+            dst[n++] = rest == 2 ? ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+            dst[n++] = '=';
+        }
+        return n;
+    }
+
+    /**
+     * InputStream que produce: prefijo JSON + imagen en Base64 + sufijo JSON.
+     */
+    private static final class EnvelopeStream extends InputStream {
+
+        private final byte[] prefix;
+        private final byte[] suffix;
+        private final Path image;
+        private long filePos;      // Posición del siguiente trozo del fichero
+        private final ByteBuffer raw = ByteBuffer.allocateDirect(CHUNK_SIZE);  // Trozo del fichero (fuera del heap)
+        private final byte[] encoded = new byte[CHUNK_SIZE / 3 * 4];           // Ese trozo en Base64
+
+        private int phase;         // 0 = prefijo, 1 = imagen, 2 = sufijo, 3 = fin
+        private int pos;           // Posición dentro del prefijo / sufijo
+        private int encodedPos;
+        private int encodedLen;
+
+        EnvelopeStream(byte[] prefix, Path image, byte[] suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.image = image;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int written = 0;
+            while (written < len && phase < 3) {
+                switch (phase) {
+                    case 0 -> {
+                        int n = Math.min(len - written, prefix.length - pos);
+                        System.arraycopy(prefix, pos, b, off + written, n);
+                        written += n;
+                        pos += n;
+                        if (pos == prefix.length) {
+                            phase = 1;
+                            pos = 0;
+                        }
+                    }
+                    case 1 -> {
+                        if (encodedPos == encodedLen && !refill()) {
+                            phase = 2;
+                            continue;
+                        }
+                        int n = Math.min(len - written, encodedLen - encodedPos);
+                        System.arraycopy(encoded, encodedPos, b, off + written, n);
+                        written += n;
+                        encodedPos += n;
+                    }
+                    default -> {
+                        int n = Math.min(len - written, suffix.length - pos);
+                        System.arraycopy(suffix, pos, b, off + written, n);
+                        written += n;
+                        pos += n;
+                        if (pos == suffix.length) phase = 3;
+                    }
+                }
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        /**
+         * Lee el siguiente trozo del fichero y lo codifica. Devuelve false al llegar al final.
+         */
+        private boolean refill() throws IOException {
+            raw.clear();
+            try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+                channel.position(filePos);
+                // Llenamos el buffer entero (salvo al final) para mantener trozos múltiplos de 3
+                while (raw.hasRemaining() && channel.read(raw) != -1) {
+                    // Sigue leyendo
+                }
+                filePos = channel.position();
+            }
+            raw.flip();
+            if (!raw.hasRemaining()) return false;
+            encodedLen = encode(raw, encoded);
+            encodedPos = 0;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            phase = 3; // No queda nada abierto: solo se deja de producir bytes
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.project;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+/**
+ * Prepara las imágenes antes de enviarlas al modelo multimodal.
+ *
+ * llava-phi3 trabaja a 336x336: enviarle una foto de 4000x3000 solo sirve para
+ * subir megas que el propio modelo va a reducir. Aquí la imagen se reduce a la
+ * resolución del modelo y se recodifica en JPEG.
+ *
+ * El resultado se guarda en disco con el hash SHA-256 del contenido original
+ * como nombre: si se vuelve a enviar la misma imagen, se reutiliza sin
+ * decodificar ni recodificar nada.
+ */
+public class ImagePreprocessor {
+
+    /**
+     * Imagen lista para enviar y hash de su contenido original.
+     */
+    public record PreparedImage(Path path, String hash) {}
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Path cacheDir;
+    private final int maxSide; // Lado máximo en píxeles
+
+    public ImagePreprocessor(Path cacheDir, int maxSide) {
+        this.cacheDir = cacheDir;
+        this.maxSide = maxSide;
+    }
+
+    /**
+     * Devuelve la versión reducida de 'image' (de la caché si ya existe).
+     * Si la imagen ya es pequeña, o Java no sabe leer su formato, se devuelve tal cual.
+     */
+    public PreparedImage prepare(Path image) throws IOException {
+        String hash = contentHash(image);
+        Path cached = cacheDir.resolve(hash + "-" + maxSide + ".jpg");
+        if (Files.exists(cached)) {
+            return new PreparedImage(cached, hash);
+        }
+
+        BufferedImage scaled;
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return new PreparedImage(image, hash); // Formato desconocido: lo enviamos sin tocar
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);   // Solo lee la cabecera
+                int height = reader.getHeight(0);
+                if (width <= maxSide && height <= maxSide) {
+                    return new PreparedImage(image, hash); // Ya cabe: no vale la pena recodificar
+                }
+                scaled = readScaled(reader, width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        Files.createDirectories(cacheDir);
+        // Se escribe en un temporal y se mueve: otra petición nunca verá un fichero a medias
+        Path tmp = Files.createTempFile(cacheDir, hash, ".tmp");
+        try {
+            writeJpeg(scaled, tmp);
+            Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return new PreparedImage(cached, hash);
+    }
+
+    /**
+     * Decodifica la imagen ya submuestreada (el decoder se salta filas y columnas)
+     * y la reduce al tamaño final con interpolación bilineal.
+     */
+    private BufferedImage readScaled(ImageReader reader, int width, int height) throws IOException {
+        double scale = (double) maxSide / Math.max(width, height);
+        int targetW = Math.max(1, (int) Math.round(width * scale));
+        int targetH = Math.max(1, (int) Math.round(height * scale));
+
+        // Submuestreo entero que deja la imagen aún por encima del tamaño final
+        int step = Math.max(1, Math.min(width / targetW, height / targetH) / 2);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(step, step, 0, 0);
+        BufferedImage source = reader.read(0, param);
+
+        // JPEG no tiene transparencia: se pinta sobre fondo blanco
+        BufferedImage target = new BufferedImage(targetW, targetH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetW, targetH);
+            g.drawImage(source, 0, 0, targetW, targetH, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * SHA-256 del contenido del fichero, leído a trozos.
+     */
+    public static String contentHash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Todas las JVM incluyen SHA-256
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -12,10 +12,19 @@ public class Main extends Application {
     final int WINDOW_WIDTH = 800;
     final int WINDOW_HEIGHT = 600;
 
+    private ChatController controller;
+
     @Override
     public void start(Stage stage) throws Exception {
+        // Precarrega el model de text en segon pla: la primera pregunta no paga la connexió ni la càrrega
+        if (ChatConfig.prewarm()) {
+            OllamaRouter.shared().warmUp(ChatConfig.textModel());
+        }
+
         // Carrega la vista inicial des del fitxer FXML
-        Parent root = FXMLLoader.load(getClass().getResource("/assets/layout.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/assets/layout.fxml"));
+        Parent root = loader.load();
+        controller = loader.getController();
         Scene scene = new Scene(root);
 
         stage.setScene(scene);
@@ -31,6 +40,15 @@ public class Main extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Cancel·la les peticions en curs en tancar la finestra
+        if (controller != null) {
+            controller.shutdown();
+        }
+        OllamaRouter.shutdownShared();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
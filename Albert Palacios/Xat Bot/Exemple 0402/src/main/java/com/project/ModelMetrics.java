@@ -0,0 +1,154 @@
+package com.project;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas acumuladas de las peticiones a un modelo.
+ */
+public class ModelMetrics implements ModelMetricsMXBean {
+
+    private final String model;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder evalTokens = new LongAdder();
+
+    // Histogramas en milisegundos (salvo tokensPerSecond)
+    private final Histogram queueWait = new Histogram();
+    private final Histogram headers = new Histogram();
+    private final Histogram timeToFirstToken = new Histogram();
+    private final Histogram total = new Histogram();
+    private final Histogram tokensPerSecond = new Histogram();
+
+    public ModelMetrics(String model) {
+        this.model = model;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Suma una petición terminada. Los tiempos solo cuentan si ha terminado bien
+     * y no venía de la caché (si no, falsearían los percentiles).
+     */
+    public void record(ChatMetrics.Sample sample) {
+        requests.increment();
+        switch (sample.state()) {
+            case DONE -> completed.increment();
+            case CANCELLED -> cancelled.increment();
+            case FAILED -> failed.increment();
+            case REJECTED -> rejected.increment();
+            default -> { }
+        }
+        if (sample.cached()) {
+            cacheHits.increment();
+            return;
+        }
+        if (sample.state() != ChatTask.State.DONE) return;
+
+        recordMillis(queueWait, sample.queueNanos());
+        recordMillis(headers, sample.headersNanos());
+        recordMillis(timeToFirstToken, sample.firstTokenNanos());
+        recordMillis(total, sample.totalNanos());
+        double rate = sample.tokensPerSecond();
+        if (rate >= 0) tokensPerSecond.record(rate);
+        if (sample.evalCount() > 0) evalTokens.add(sample.evalCount());
+    }
+
+    private static void recordMillis(Histogram histogram, long nanos) {
+        if (nanos >= 0) histogram.record(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getQueueWaitP50Millis() {
+        return queueWait.percentile(50);
+    }
+
+    @Override
+    public long getHeadersP50Millis() {
+        return headers.percentile(50);
+    }
+
+    @Override
+    public long getTimeToFirstTokenP50Millis() {
+        return timeToFirstToken.percentile(50);
+    }
+
+    @Override
+    public long getTimeToFirstTokenP99Millis() {
+        return timeToFirstToken.percentile(99);
+    }
+
+    @Override
+    public long getTotalP50Millis() {
+        return total.percentile(50);
+    }
+
+    @Override
+    public long getTotalP99Millis() {
+        return total.percentile(99);
+    }
+
+    @Override
+    public double getTokensPerSecondMean() {
+        return tokensPerSecond.getMean();
+    }
+
+    @Override
+    public long getTokensPerSecondP50() {
+        return tokensPerSecond.percentile(50);
+    }
+
+    @Override
+    public long getEvalTokens() {
+        return evalTokens.sum();
+    }
+
+    /**
+     * Resumen de una línea para el panel de estadísticas.
+     */
+    public String summary() {
+        if (completed.sum() == 0) {
+            return model + ": " + requests.sum() + " peticions";
+        }
+        return String.format("%s: TTFT p50 %d ms · p99 %d ms · total p50 %d ms · %.1f tok/s · %d peticions",
+                model, getTimeToFirstTokenP50Millis(), getTimeToFirstTokenP99Millis(), getTotalP50Millis(),
+                getTokensPerSecondMean(), requests.sum());
+    }
+}
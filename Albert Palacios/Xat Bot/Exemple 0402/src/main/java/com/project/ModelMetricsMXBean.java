@@ -0,0 +1,40 @@
+package com.project;
+
+/**
+ * Métricas de un modelo, visibles por JMX (jconsole, VisualVM...)
+ * como com.project:type=ChatMetrics,model=...
+ *
+ * Los tiempos son en milisegundos; los percentiles, aproximados (ver Histogram).
+ */
+public interface ModelMetricsMXBean {
+
+    long getRequests();
+
+    long getCompleted();
+
+    long getFailed();
+
+    long getCancelled();
+
+    long getRejected();
+
+    long getCacheHits();
+
+    long getQueueWaitP50Millis();
+
+    long getHeadersP50Millis();
+
+    long getTimeToFirstTokenP50Millis();
+
+    long getTimeToFirstTokenP99Millis();
+
+    long getTotalP50Millis();
+
+    long getTotalP99Millis();
+
+    double getTokensPerSecondMean();
+
+    long getTokensPerSecondP50();
+
+    long getEvalTokens();
+}
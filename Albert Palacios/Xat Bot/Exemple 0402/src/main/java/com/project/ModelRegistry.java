@@ -0,0 +1,39 @@
+package com.project;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Qué modelo atiende cada tipo de petición.
+ *
+ * Los modelos salen de ChatConfig (-Dchat.model.text, -Dchat.model.image); el
+ * controlador pide "el modelo de texto" en lugar de llevar el nombre escrito.
+ */
+public class ModelRegistry {
+
+    public enum Role { TEXT, IMAGE }
+
+    private final Map<Role, String> models = new EnumMap<>(Role.class);
+
+    public ModelRegistry(String textModel, String imageModel) {
+        models.put(Role.TEXT, textModel);
+        models.put(Role.IMAGE, imageModel);
+    }
+
+    public static ModelRegistry fromConfig() {
+        return new ModelRegistry(ChatConfig.textModel(), ChatConfig.imageModel());
+    }
+
+    public String modelFor(Role role) {
+        return models.get(role);
+    }
+
+    /**
+     * Todos los modelos configurados, sin repetir.
+     */
+    public Set<String> all() {
+        return new LinkedHashSet<>(models.values());
+    }
+}
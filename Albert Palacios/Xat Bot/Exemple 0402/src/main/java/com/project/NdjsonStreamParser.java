@@ -0,0 +1,408 @@
+package com.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parser incremental para el stream NDJSON de Ollama (/api/generate).
+ *
+ * Ollama envía un objeto JSON por línea:
+ *   {"model":"gemma3:1b","created_at":"...","response":"Hola","done":false}
+ *
+ * En lugar de leer cada línea como String y construir un JSONObject entero,
+ * este parser recorre directamente los bytes que llegan del socket y solo se
+ * fija en los campos que nos interesan ("response", "done", "error", y el array
+ * "context" y las estadísticas "eval_count"/"eval_duration" que Ollama envía en
+ * el último objeto).
+ *
+ * - Los trozos (chunks) pueden cortar el JSON por cualquier byte: el estado se guarda entre llamadas.
+ * - Un carácter UTF-8 partido entre dos chunks no es problema: se acumulan bytes y se decodifica al final.
+ * - Soporta los escapes de JSON (\n, \", \\uXXXX, pares surrogados...).
+ * - Los buffers internos se reutilizan: por token solo se crea el String del texto decodificado.
+ *
+ * No es un parser JSON general: ignora cualquier campo que no conozca.
+ */
+public class NdjsonStreamParser {
+
+    /**
+     * Recibe los eventos del parser. Se llama desde el mismo hilo que hace feed().
+     */
+    public interface Listener {
+        void onToken(String token);   // Fragmento de texto ("response")
+        void onDone();                // Objeto con "done": true completo
+        default void onError(String message) {} // Objeto con "error"
+    }
+
+    // --- Campos conocidos (claves del objeto de primer nivel) ---
+    private static final int FIELD_NONE = 0;
+    private static final int FIELD_RESPONSE = 1;
+    private static final int FIELD_DONE = 2;
+    private static final int FIELD_ERROR = 3;
+    private static final int FIELD_CONTEXT = 4;
+    private static final int FIELD_EVAL_COUNT = 5;
+    private static final int FIELD_EVAL_DURATION = 6;
+
+    private static final byte[] KEY_RESPONSE = "response".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_DONE = "done".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_ERROR = "error".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_CONTEXT = "context".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_EVAL_COUNT = "eval_count".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_EVAL_DURATION = "eval_duration".getBytes(StandardCharsets.US_ASCII);
+
+    private final Listener listener;
+
+    // --- Estado de la estructura ---
+    private int depth;                 // Nivel de anidamiento ({ y [)
+    private boolean expectKey;         // En el primer nivel, el próximo string es una clave
+    private int field = FIELD_NONE;    // Campo cuyo valor estamos leyendo
+
+    // --- Estado dentro de un string ---
+    private boolean inString;
+    private boolean readingKey;        // El string actual es una clave
+    private boolean escape;            // Hemos visto '\' y falta el carácter escapado
+    private int unicodeDigits = -1;    // Dígitos leídos de un \\uXXXX (-1 = no estamos en uno)
+    private int unicodeValue;
+    private int highSurrogate;         // Primera mitad de un par surrogado pendiente
+
+    // --- Buffers reutilizables ---
+    private final byte[] key = new byte[32];
+    private int keyLen;
+    private byte[] text = new byte[256];
+    private int textLen;
+    private final byte[] literal = new byte[32];
+    private int literalLen;
+    private boolean inLiteral;
+    private int[] context = new int[0]; // Tokens del array "context"
+    private int contextLen;
+    private boolean hasContext;
+    private long evalCount = -1;        // Tokens generados según Ollama (-1 = no enviado)
+    private long evalDuration = -1;     // Tiempo de generación en nanosegundos (-1 = no enviado)
+
+    // --- Estado del objeto actual ---
+    private boolean objectDone;
+    private String objectError;
+    private boolean finished;          // Ya se ha recibido un objeto con "done": true
+
+    public NdjsonStreamParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Indica si ya ha llegado el objeto final ("done": true).
+     */
+    public boolean isDone() {
+        return finished;
+    }
+
+    /**
+     * Array "context" del objeto final (estado de la conversación en el modelo),
+     * o null si Ollama no lo ha enviado.
+     */
+    public int[] getContext() {
+        return hasContext ? Arrays.copyOf(context, contextLen) : null;
+    }
+
+    /**
+     * "eval_count" del objeto final: tokens generados, o -1 si Ollama no lo ha enviado.
+     */
+    public long getEvalCount() {
+        return evalCount;
+    }
+
+    /**
+     * "eval_duration" del objeto final: nanosegundos generando, o -1 si Ollama no lo ha enviado.
+     */
+    public long getEvalDuration() {
+        return evalDuration;
+    }
+
+    /**
+     * Procesa un trozo de bytes tal cual llega del socket.
+     */
+    public void feed(byte[] buf, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            accept(buf[i]);
+        }
+    }
+
+    /**
+     * Procesa los bytes restantes del ByteBuffer (avanza su posición).
+     */
+    public void feed(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            accept(buf.get());
+        }
+    }
+
+    private void accept(byte b) {
+        if (inString) {
+            acceptInString(b);
+            return;
+        }
+
+        switch (b) {
+            case ' ', '\t', '\r', '\n' -> endLiteral();
+            case '{', '[' -> {
+                endLiteral();
+                depth++;
+                if (b == '{' && depth == 1) startObject();
+                if (b == '[' && depth == 2 && field == FIELD_CONTEXT) {
+                    contextLen = 0;
+                    hasContext = true;
+                }
+            }
+            case '}', ']' -> {
+                endLiteral();
+                depth--;
+                if (b == '}' && depth == 0) endObject();
+                if (depth < 0) depth = 0; // Basura entre líneas: volvemos a empezar
+            }
+            case ',' -> {
+                endLiteral();
+                if (depth == 1) {
+                    expectKey = true;
+                    field = FIELD_NONE;
+                }
+            }
+            case ':' -> {
+                if (depth == 1) expectKey = false;
+            }
+            case '"' -> {
+                inString = true;
+                readingKey = depth == 1 && expectKey;
+                keyLen = 0;
+                textLen = 0;
+            }
+            default -> {
+                // Parte de un literal: true, false, null o un número (también los del array "context")
+                boolean wanted = depth == 1 || (depth == 2 && field == FIELD_CONTEXT);
+                if (wanted && !expectKey && literalLen < literal.length) {
+                    literal[literalLen++] = b;
+                    inLiteral = true;
+                }
+            }
+        }
+    }
+
+    private void acceptInString(byte b) {
+        if (unicodeDigits >= 0) {
+            acceptUnicodeDigit(b);
+            return;
+        }
+        if (escape) {
+            escape = false;
+            switch (b) {
+                case 'n' -> appendChar('\n');
+                case 't' -> appendChar('\t');
+                case 'r' -> appendChar('\r');
+                case 'b' -> appendChar('\b');
+                case 'f' -> appendChar('\f');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                }
+                default -> appendChar(b); // \" \\ \/
+            }
+            return;
+        }
+        if (b == '\\') {
+            escape = true;
+        } else if (b == '"') {
+            endString();
+        } else {
+            appendByte(b);
+        }
+    }
+
+    private void acceptUnicodeDigit(byte b) {
+        int digit = Character.digit(b, 16);
+        if (digit < 0) {
+            // Escape mal formado: lo descartamos y seguimos
+            unicodeDigits = -1;
+            acceptInString(b);
+            return;
+        }
+        unicodeValue = (unicodeValue << 4) | digit;
+        if (++unicodeDigits < 4) return;
+
+        unicodeDigits = -1;
+        int unit = unicodeValue;
+        if (Character.isHighSurrogate((char) unit)) {
+            flushSurrogate();
+            highSurrogate = unit;
+        } else if (Character.isLowSurrogate((char) unit) && highSurrogate != 0) {
+            int codePoint = Character.toCodePoint((char) highSurrogate, (char) unit);
+            highSurrogate = 0;
+            appendCodePoint(codePoint);
+        } else {
+            appendChar(unit);
+        }
+    }
+
+    private void startObject() {
+        expectKey = true;
+        field = FIELD_NONE;
+        objectDone = false;
+        objectError = null;
+        hasContext = false;
+        contextLen = 0;
+        evalCount = -1;
+        evalDuration = -1;
+    }
+
+    private void endObject() {
+        field = FIELD_NONE;
+        if (objectError != null) {
+            listener.onError(objectError);
+        }
+        if (objectDone) {
+            finished = true;
+            listener.onDone();
+        }
+    }
+
+    private void endString() {
+        inString = false;
+        flushSurrogate();
+        if (readingKey) {
+            field = matchKey();
+            return;
+        }
+        if (depth != 1) return;
+
+        if (field == FIELD_RESPONSE) {
+            if (textLen > 0) {
+                listener.onToken(new String(text, 0, textLen, StandardCharsets.UTF_8));
+            }
+        } else if (field == FIELD_ERROR) {
+            objectError = new String(text, 0, textLen, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void endLiteral() {
+        if (!inLiteral) return;
+        inLiteral = false;
+        if (depth == 1 && field == FIELD_DONE) {
+            objectDone = literalLen == 4 && literal[0] == 't';
+        } else if (depth == 1 && field == FIELD_EVAL_COUNT) {
+            evalCount = parseLong();
+        } else if (depth == 1 && field == FIELD_EVAL_DURATION) {
+            evalDuration = parseLong();
+        } else if (depth == 2 && field == FIELD_CONTEXT) {
+            if (contextLen == context.length) {
+                context = Arrays.copyOf(context, Math.max(256, context.length * 2));
+            }
+            context[contextLen++] = (int) parseLong();
+        }
+        literalLen = 0;
+    }
+
+    /**
+     * Convierte el literal actual en número sin crear ningún String.
+     */
+    private long parseLong() {
+        long value = 0;
+        boolean negative = literalLen > 0 && literal[0] == '-';
+        for (int i = negative ? 1 : 0; i < literalLen; i++) {
+            int digit = literal[i] - '0';
+            if (digit < 0 || digit > 9) break; // Parte decimal o exponente: se ignora
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private int matchKey() {
+        if (keyEquals(KEY_RESPONSE)) return FIELD_RESPONSE;
+        if (keyEquals(KEY_DONE)) return FIELD_DONE;
+        if (keyEquals(KEY_ERROR)) return FIELD_ERROR;
+        if (keyEquals(KEY_CONTEXT)) return FIELD_CONTEXT;
+        if (keyEquals(KEY_EVAL_COUNT)) return FIELD_EVAL_COUNT;
+        if (keyEquals(KEY_EVAL_DURATION)) return FIELD_EVAL_DURATION;
+        return FIELD_NONE;
+    }
+
+    private boolean keyEquals(byte[] expected) {
+        if (keyLen != expected.length) return false;
+        for (int i = 0; i < keyLen; i++) {
+            if (key[i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // ================== ACUMULACIÓN DE BYTES ==================
+
+    /**
+     * Indica si el string actual nos interesa (clave o valor de un campo de texto).
+     */
+    private boolean capturing() {
+        return readingKey || (depth == 1 && (field == FIELD_RESPONSE || field == FIELD_ERROR));
+    }
+
+    private void appendByte(byte b) {
+        flushSurrogate();
+        if (readingKey) {
+            // Las claves que buscamos son cortas: si no caben, no son nuestras
+            if (keyLen < key.length) key[keyLen] = b;
+            keyLen++;
+        } else if (capturing()) {
+            ensureText(1);
+            text[textLen++] = b;
+        }
+    }
+
+    private void appendChar(int c) {
+        if (c < 0x80) {
+            appendByte((byte) c);
+        } else {
+            flushSurrogate();
+            appendCodePoint(c);
+        }
+    }
+
+    /**
+     * Codifica un code point en UTF-8 dentro del buffer de texto.
+     */
+    private void appendCodePoint(int cp) {
+        if (readingKey) {
+            keyLen++; // Las claves con caracteres no ASCII nunca coinciden
+            return;
+        }
+        if (!capturing()) return;
+        if (cp <= 0xFFFF && Character.isSurrogate((char) cp)) cp = 0xFFFD; // Surrogado suelto
+        ensureText(4);
+        if (cp < 0x80) {
+            text[textLen++] = (byte) cp;
+        } else if (cp < 0x800) {
+            text[textLen++] = (byte) (0xC0 | (cp >> 6));
+            text[textLen++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            text[textLen++] = (byte) (0xE0 | (cp >> 12));
+            text[textLen++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            text[textLen++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            text[textLen++] = (byte) (0xF0 | (cp >> 18));
+            text[textLen++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            text[textLen++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            text[textLen++] = (byte) (0x80 | (cp & 0x3F));
+        }
+    }
+
+    /**
+     * Un \\uD8xx sin su pareja se sustituye por el carácter de reemplazo.
+     */
+    private void flushSurrogate() {
+        if (highSurrogate == 0) return;
+        highSurrogate = 0;
+        appendCodePoint(0xFFFD);
+    }
+
+    private void ensureText(int extra) {
+        if (textLen + extra > text.length) {
+            byte[] bigger = new byte[Math.max(text.length * 2, textLen + extra)];
+            System.arraycopy(text, 0, bigger, 0, textLen);
+            text = bigger;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.project;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente HTTP compartido para hablar con un servidor Ollama.
+ *
+ * Toda la aplicación usa una única instancia por servidor (ver OllamaRouter),
+ * así las conexiones keep-alive se reutilizan entre peticiones en lugar de abrir
+ * un socket nuevo para cada pregunta.
+ *
+ * - Versión HTTP explícita (HTTP/1.1 por defecto: Ollama no habla HTTP/2 sin TLS)
+ * - Executor propio y acotado para el trabajo asíncrono del HttpClient
+ * - Timeout de conexión, de petición y de conexiones inactivas del pool
+ * - warmUp(): carga el modelo en Ollama antes de la primera pregunta
+ * - Cortacircuitos (breaker()): si Ollama no responde, las peticiones fallan al
+ *   momento y se comprueba el servidor en segundo plano hasta que vuelve
+ *
+ * La configuración sale de ChatConfig.
+ */
+public final class OllamaClient implements AutoCloseable {
+
+    private final URI baseUri;
+    private final Duration requestTimeout;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler; // Comprobaciones del breaker y plazos de las tareas
+    private final HttpClient httpClient;
+    private final CircuitBreaker breaker;
+
+    public OllamaClient(URI baseUri, HttpClient.Version version, Duration connectTimeout,
+                        Duration requestTimeout, int threads) {
+        this.baseUri = baseUri;
+        this.requestTimeout = requestTimeout;
+
+        // Hilos daemon: no impiden que la JVM termine al cerrar la ventana
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "ollama-http-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "ollama-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timers.setRemoveOnCancelPolicy(true); // Los plazos cancelados no se quedan en la cola
+        this.scheduler = timers;
+
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+
+        this.breaker = new CircuitBreaker(ChatConfig.breakerFailures(), ChatConfig.breakerProbeInterval(),
+                scheduler, this::ping);
+    }
+
+    public HttpClient http() {
+        return httpClient;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    /**
+     * Temporizador compartido (daemon) para trabajo programado, como los plazos de las peticiones.
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Endpoint /api/generate.
+     */
+    public URI generateUri() {
+        return baseUri.resolve("/api/generate");
+    }
+
+    /**
+     * Tiempo máximo hasta recibir las cabeceras de la respuesta.
+     */
+    public Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Pide a Ollama que cargue el modelo en memoria y lo mantenga cargado.
+     *
+     * Una petición a /api/generate sin prompt solo carga el modelo, y de paso deja
+     * una conexión abierta en el pool. Así la primera pregunta real no paga
+     * ni la conexión ni la carga del modelo.
+     */
+    public CompletableFuture<Boolean> warmUp(String model, Duration keepAlive) {
+        JSONObject payload = new JSONObject();
+        payload.put("model", model);
+        payload.put("keep_alive", keepAlive.toSeconds() + "s");
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(generateUri())
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        System.err.println("No s'ha pogut precarregar " + model + ": " + e.getMessage());
+                        return false;
+                    }
+                    return response.statusCode() == 200;
+                });
+    }
+
+    /**
+     * Modelos cargados ahora mismo en el servidor (GET /api/ps), o null si no responde.
+     */
+    public CompletableFuture<Set<String>> loadedModels() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(baseUri.resolve("/api/ps"))
+                .timeout(ChatConfig.breakerProbeInterval())
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> {
+                    if (e != null || response.statusCode() != 200) return null;
+                    Set<String> names = new HashSet<>();
+                    JSONArray models = new JSONObject(response.body()).optJSONArray("models");
+                    for (int i = 0; models != null && i < models.length(); i++) {
+                        names.add(models.getJSONObject(i).optString("name"));
+                    }
+                    return names;
+                });
+    }
+
+    /**
+     * Comprueba si el servidor responde (GET /api/version), sin cargar ningún modelo.
+     */
+    public CompletableFuture<Boolean> ping() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(baseUri.resolve("/api/version"))
+                .timeout(ChatConfig.breakerProbeInterval())
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> e == null && response.statusCode() == 200);
+    }
+
+    @Override
+    public void close() {
+        httpClient.shutdownNow(); // Aborta las peticiones en curso (close() esperaría a que acabaran)
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package com.project;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reparte las peticiones entre uno o varios servidores Ollama
+ * (-Dchat.ollama.urls=http://localhost:11434,http://localhost:11435).
+ *
+ * Cambiar de modelo en Ollama cuesta segundos (descargar uno de la GPU y cargar
+ * el otro), así que el router recuerda qué modelos tiene cargados cada servidor:
+ *
+ * - Al terminar bien una petición, el modelo queda marcado como cargado en ese servidor.
+ * - Cada cierto tiempo se pregunta a cada servidor (GET /api/ps) qué tiene cargado de verdad.
+ * - Para cada petición se elige el servidor con menos peticiones en curso, contando
+ *   una carga de modelo como LOAD_PENALTY peticiones más. Los servidores con el
+ *   cortacircuitos abierto se saltan.
+ *
+ * Los modelos se mantienen cargados con el "keep_alive" de cada petición
+ * (ChatConfig.keepAlive) y se pueden precargar con warmUp().
+ */
+public final class OllamaRouter implements AutoCloseable {
+
+    private static final int LOAD_PENALTY = 2;
+
+    private static OllamaRouter shared;
+
+    private final List<OllamaClient> clients;
+    private final Map<OllamaClient, AtomicInteger> inFlight = new IdentityHashMap<>();  // Solo se lee tras el constructor
+    private final Map<OllamaClient, Set<String>> resident = new IdentityHashMap<>();    // Ídem; los Set son concurrentes
+
+    public OllamaRouter(List<OllamaClient> clients, Duration refreshInterval) {
+        if (clients.isEmpty()) throw new IllegalArgumentException("Cal almenys un servidor Ollama");
+        this.clients = List.copyOf(clients);
+        for (OllamaClient client : this.clients) {
+            inFlight.put(client, new AtomicInteger());
+            resident.put(client, ConcurrentHashMap.newKeySet());
+        }
+        if (!refreshInterval.isZero()) {
+            long millis = refreshInterval.toMillis();
+            scheduler().scheduleWithFixedDelay(this::refresh, 0, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Router con un solo servidor (sin consultas periódicas a /api/ps).
+     */
+    public static OllamaRouter of(OllamaClient client) {
+        return new OllamaRouter(List.of(client), Duration.ZERO);
+    }
+
+    /**
+     * Instancia compartida, creada la primera vez según ChatConfig.
+     */
+    public static synchronized OllamaRouter shared() {
+        if (shared == null) {
+            // El pool de conexiones del HttpClient se configura con propiedades del JDK,
+            // que se leen al crear el primer cliente
+            setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(ChatConfig.httpIdleTimeout().toSeconds()));
+            setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(ChatConfig.httpPoolSize()));
+
+            List<OllamaClient> clients = new ArrayList<>();
+            for (URI url : ChatConfig.ollamaUrls()) {
+                clients.add(new OllamaClient(url, ChatConfig.httpVersion(), ChatConfig.httpConnectTimeout(),
+                        ChatConfig.httpRequestTimeout(), ChatConfig.httpThreads()));
+            }
+            shared = new OllamaRouter(clients, ChatConfig.routerRefreshInterval());
+        }
+        return shared;
+    }
+
+    /**
+     * Cierra la instancia compartida (si se llegó a crear).
+     */
+    public static synchronized void shutdownShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    public List<OllamaClient> clients() {
+        return clients;
+    }
+
+    /**
+     * Temporizador compartido (el del primer cliente).
+     */
+    public ScheduledExecutorService scheduler() {
+        return clients.get(0).scheduler();
+    }
+
+    /**
+     * Elige el servidor para una petición al modelo y la cuenta como "en curso".
+     * Hay que llamar a release() al terminar.
+     * Si todos tienen el cortacircuitos abierto, devuelve uno igualmente: la petición fallará al momento.
+     */
+    public OllamaClient acquire(String model) {
+        OllamaClient best = null;
+        int bestScore = Integer.MAX_VALUE;
+        for (OllamaClient client : clients) {
+            if (!client.breaker().allowRequest()) continue;
+            int score = inFlight.get(client).get() + (isResident(client, model) ? 0 : LOAD_PENALTY);
+            if (score < bestScore) {
+                best = client;
+                bestScore = score;
+            }
+        }
+        if (best == null) best = clients.get(0);
+        inFlight.get(best).incrementAndGet();
+        return best;
+    }
+
+    /**
+     * Termina una petición empezada con acquire(). Si ha ido bien, el modelo está cargado en ese servidor.
+     */
+    public void release(OllamaClient client, String model, boolean success) {
+        inFlight.get(client).decrementAndGet();
+        if (success) resident.get(client).add(model);
+    }
+
+    public boolean isResident(OllamaClient client, String model) {
+        return resident.get(client).contains(model);
+    }
+
+    /**
+     * Indica si algún servidor tiene el modelo cargado.
+     */
+    public boolean isResident(String model) {
+        for (OllamaClient client : clients) {
+            if (isResident(client, model)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Servidores con el cortacircuitos abierto.
+     */
+    public int unavailableCount() {
+        int count = 0;
+        for (OllamaClient client : clients) {
+            if (!client.breaker().allowRequest()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Carga el modelo en el servidor que elegiría una petición, si no está ya cargado en alguno.
+     */
+    public CompletableFuture<Void> warmUp(String model) {
+        if (isResident(model)) return CompletableFuture.completedFuture(null);
+        OllamaClient client = acquire(model);
+        return client.warmUp(model, ChatConfig.keepAlive(model))
+                .whenComplete((ok, e) -> release(client, model, Boolean.TRUE.equals(ok)))
+                .thenApply(ok -> null);
+    }
+
+    /**
+     * Actualiza qué modelos tiene cargados cada servidor (Ollama los descarga al vencer su keep_alive).
+     */
+    private void refresh() {
+        for (OllamaClient client : clients) {
+            client.loadedModels().thenAccept(models -> {
+                if (models == null) return; // No responde: se mantiene lo que sabíamos
+                Set<String> set = resident.get(client);
+                set.retainAll(models);
+                set.addAll(models);
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OllamaClient client : clients) {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.project;
+
+import java.io.IOException;
+
+/**
+ * Ollama no ha podido atender la petición: está caído, ocupado (HTTP 503)
+ * o ha cortado la respuesta a medias.
+ *
+ * 'retryable' indica si tiene sentido reintentar enseguida; no lo tiene
+ * cuando el cortacircuitos está abierto.
+ */
+public class OllamaUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retryable;
+
+    public OllamaUnavailableException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,214 @@
+package com.project;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caché de respuestas de Ollama.
+ *
+ * Si se envía exactamente la misma petición (modelo, prompt, imagen y opciones),
+ * se reutiliza la respuesta anterior en lugar de volver a generarla.
+ *
+ * - En memoria: LRU limitada por número de entradas y por caracteres totales.
+ * - En disco (opcional): un fichero por respuesta, nombrado con el SHA-256 de la clave.
+ *
+ * Los contadores de aciertos y fallos permiten ver si la caché sirve de algo;
+ * la caché de la aplicación (fromConfig) los publica por JMX como
+ * com.project:type=PromptCache.
+ */
+public class PromptCache implements PromptCacheMXBean {
+
+    /**
+     * Respuesta guardada: el texto y el "context" que devolvió Ollama (puede ser null).
+     */
+    public record Entry(String text, int[] context) {
+        long size() {
+            return text.length() + (context != null ? context.length : 0);
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final Path diskDir; // null = solo memoria
+
+    // LinkedHashMap en orden de acceso: el primero es el menos usado recientemente
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars; // Tamaño actual (claves + respuestas + contexts), protegido por 'this'
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PromptCache(int maxEntries, long maxChars, Path diskDir) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.diskDir = diskDir;
+    }
+
+    /**
+     * Crea la caché según ChatConfig, o devuelve null si está desactivada.
+     */
+    public static PromptCache fromConfig() {
+        if (!ChatConfig.cacheEnabled()) return null;
+        PromptCache cache = new PromptCache(ChatConfig.cacheMaxEntries(), ChatConfig.cacheMaxChars(),
+                ChatConfig.cachePersistent() ? ChatConfig.cacheDir() : null);
+        cache.registerMBean();
+        return cache;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.project:type=PromptCache");
+            if (server.isRegistered(name)) server.unregisterMBean(name); // La última caché creada
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("No s'han pogut publicar les mètriques de la memòria cau per JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve la respuesta guardada para la clave, o null si no hay.
+     */
+    public Entry get(String key) {
+        Entry value;
+        synchronized (this) {
+            value = entries.get(key);
+        }
+        if (value == null && diskDir != null) {
+            value = readFromDisk(key);
+            if (value != null) putInMemory(key, value);
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Guarda una respuesta completa.
+     */
+    public void put(String key, Entry value) {
+        putInMemory(key, value);
+        if (diskDir != null) writeToDisk(key, value);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getChars() {
+        return chars;
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    private synchronized void putInMemory(String key, Entry value) {
+        long size = key.length() + value.size();
+        if (size > maxChars) return; // Demasiado grande para la caché
+
+        Entry previous = entries.put(key, value);
+        if (previous != null) chars -= key.length() + previous.size();
+        chars += size;
+
+        // Expulsa las menos usadas hasta volver a estar dentro de los límites
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || chars > maxChars) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            chars -= eldest.getKey().length() + eldest.getValue().size();
+            it.remove();
+        }
+    }
+
+    // ================== DISCO ==================
+
+    private Path fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return diskDir.resolve(HexFormat.of().formatHex(digest) + ".txt");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Todas las JVM incluyen SHA-256
+        }
+    }
+
+    /**
+     * Formato del fichero: primera línea con el context separado por comas, y después el texto.
+     */
+    private Entry readFromDisk(String key) {
+        try {
+            String content = Files.readString(fileFor(key), StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            if (newline < 0) return null; // Fichero de una versión anterior o corrupto
+            String header = content.substring(0, newline);
+            int[] context = header.isEmpty() ? null
+                    : Arrays.stream(header.split(",")).mapToInt(Integer::parseInt).toArray();
+            return new Entry(content.substring(newline + 1), context);
+        } catch (NumberFormatException e) {
+            return null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("No s'ha pogut llegir la memòria cau: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry value) {
+        try {
+            Files.createDirectories(diskDir);
+            Path file = fileFor(key);
+            Path tmp = Files.createTempFile(diskDir, "entry", ".tmp");
+            try {
+                String header = value.context() == null ? ""
+                        : Arrays.stream(value.context()).mapToObj(String::valueOf).collect(Collectors.joining(","));
+                Files.writeString(tmp, header + "\n" + value.text(), StandardCharsets.UTF_8);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            System.err.println("No s'ha pogut desar a la memòria cau: " + e.getMessage());
+        }
+    }
+}
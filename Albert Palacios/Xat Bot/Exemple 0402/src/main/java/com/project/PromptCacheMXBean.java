@@ -0,0 +1,23 @@
+package com.project;
+
+/**
+ * Estado de la caché de respuestas, visible por JMX (jconsole, VisualVM...)
+ * como com.project:type=PromptCache.
+ */
+public interface PromptCacheMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    /** Aciertos entre consultas (0 si aún no se ha consultado). */
+    double getHitRatio();
+
+    int getEntries();
+
+    long getChars();
+
+    int getMaxEntries();
+
+    long getMaxChars();
+}
@@ -0,0 +1,129 @@
+package com.project;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decide cuándo empieza cada petición a Ollama.
+ *
+ * Ollama procesa pocas peticiones a la vez: si se le envían todas de golpe, las
+ * preguntas cortas de texto acaban esperando detrás de las imágenes. Aquí:
+ *
+ * - Hay un máximo de peticiones en curso, en total y por modelo.
+ * - Las que no pueden empezar esperan en una cola acotada; si está llena, se rechazan.
+ * - La cola va por prioridad: el texto (INTERACTIVE) pasa delante de las imágenes (BULK).
+ * - Las peticiones BULK nunca ocupan la última plaza libre: siempre queda sitio
+ *   para una pregunta de texto aunque haya imágenes en marcha.
+ *
+ * Todos los métodos son thread-safe.
+ */
+public class RequestScheduler {
+
+    public enum Priority { INTERACTIVE, BULK }
+
+    private record Entry(ChatTask task, Priority priority, long order) {}
+
+    private final Executor executor;
+    private final int maxRunning;                  // Peticiones en curso, en total
+    private final int maxQueued;                   // Peticiones esperando
+    private final ToIntFunction<String> modelLimit; // Peticiones en curso por modelo
+
+    // Cola ordenada por prioridad y, dentro de cada prioridad, por orden de llegada
+    private final TreeSet<Entry> queue = new TreeSet<>(
+            Comparator.comparing(Entry::priority).thenComparingLong(Entry::order));
+    private final Set<ChatTask> running = new HashSet<>();
+    private final Map<String, Integer> runningPerModel = new HashMap<>();
+    private long counter;
+
+    public RequestScheduler(Executor executor, int maxRunning, int maxQueued, ToIntFunction<String> modelLimit) {
+        this.executor = executor;
+        this.maxRunning = Math.max(1, maxRunning);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.modelLimit = modelLimit;
+    }
+
+    /**
+     * Crea el planificador según ChatConfig.
+     */
+    public static RequestScheduler fromConfig(Executor executor) {
+        return new RequestScheduler(executor, ChatConfig.maxConcurrentRequests(), ChatConfig.queueCapacity(),
+                ChatConfig::modelConcurrency);
+    }
+
+    /**
+     * Prioridad de una petición: las imágenes son trabajo pesado.
+     */
+    public static Priority priorityOf(ChatRequest request) {
+        return request.hasImage() ? Priority.BULK : Priority.INTERACTIVE;
+    }
+
+    /**
+     * Encola la tarea y la lanza en cuanto haya sitio.
+     * Devuelve false si la cola está llena: la tarea no se ha encolado.
+     */
+    public synchronized boolean submit(ChatTask task) {
+        Entry entry = new Entry(task, priorityOf(task.getRequest()), counter++);
+        queue.add(entry);
+        dispatch();
+        if (queue.size() > maxQueued && queue.remove(entry)) {
+            return false; // No ha podido empezar y no cabe en la cola
+        }
+        return true;
+    }
+
+    /**
+     * Avisa de que una tarea ha terminado: libera su plaza y lanza las siguientes.
+     */
+    public synchronized void finished(ChatTask task) {
+        if (!running.remove(task)) return; // No había llegado a empezar
+        runningPerModel.merge(task.getRequest().getModel(), -1, Integer::sum);
+        dispatch();
+    }
+
+    /**
+     * Saca de la cola todas las tareas que aún no han empezado.
+     */
+    public synchronized List<ChatTask> removeQueued() {
+        List<ChatTask> tasks = new ArrayList<>(queue.size());
+        for (Entry entry : queue) tasks.add(entry.task());
+        queue.clear();
+        return tasks;
+    }
+
+    public synchronized int runningCount() {
+        return running.size();
+    }
+
+    public synchronized int queuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Lanza, en orden de prioridad, todas las tareas de la cola que tengan sitio.
+     * Una tarea cuyo modelo está ocupado no bloquea a las de otros modelos.
+     */
+    private void dispatch() {
+        Iterator<Entry> it = queue.iterator();
+        while (it.hasNext() && running.size() < maxRunning) {
+            Entry entry = it.next();
+            String model = entry.task().getRequest().getModel();
+            if (runningPerModel.getOrDefault(model, 0) >= modelLimit.applyAsInt(model)) continue;
+            // La última plaza libre queda reservada para el texto
+            if (entry.priority() == Priority.BULK && maxRunning > 1 && running.size() >= maxRunning - 1) continue;
+
+            it.remove();
+            running.add(entry.task());
+            runningPerModel.merge(model, 1, Integer::sum);
+            executor.execute(entry.task());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.project;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.function.Consumer;
+
+/**
+ * Acumula los tokens que llegan del stream de Ollama y los pinta en la interfaz
+ * como máximo una vez por "pulse" de JavaFX (~60 veces por segundo).
+ *
+ * - append() se llama desde el hilo de lectura: solo añade a un StringBuilder.
+ * - Un AnimationTimer vacía ese buffer en cada frame y llama al 'renderer'
+ *   con el texto completo acumulado (en el hilo de JavaFX).
+ *
+ * Así el trabajo en el hilo de JavaFX depende de los frames, no de los tokens:
+ * da igual que el modelo emita 10 o 1000 tokens por segundo.
+ *
+ * Cuando ya se ha pintado todo tras close(), se llama a 'onFinished' (si hay)
+ * con el texto final.
+ *
+ * replay() pinta un texto que ya está completo (una respuesta de la caché) a
+ * trozos, un número fijo de caracteres por frame, como si llegara del modelo.
+ */
+public class TokenSink {
+
+    private final StringBuilder pending = new StringBuilder(); // Tokens aún no pintados (protegido por 'this')
+    private final StringBuilder shown = new StringBuilder();   // Texto ya pintado (solo hilo de JavaFX)
+    private final Consumer<String> renderer;                   // Pinta el texto completo (hilo de JavaFX)
+    private final Consumer<String> onFinished;                 // Recibe el texto final (hilo de JavaFX), puede ser null
+
+    private AnimationTimer timer;     // Se crea en start(), siempre en el hilo de JavaFX
+    private volatile boolean closed;  // No llegarán más tokens
+    private volatile int charsPerFrame; // Máximo por frame (0 = todo lo pendiente)
+    private boolean finished;         // Ya se ha llamado a onFinished (solo hilo de JavaFX)
+
+    public TokenSink(Consumer<String> renderer) {
+        this(renderer, null);
+    }
+
+    public TokenSink(Consumer<String> renderer, Consumer<String> onFinished) {
+        this.renderer = renderer;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Añade un token. Se puede llamar desde cualquier hilo y no toca la interfaz.
+     */
+    public void append(String token) {
+        if (token == null || token.isEmpty()) return;
+        synchronized (this) {
+            pending.append(token);
+        }
+    }
+
+    /**
+     * Añade un texto completo para pintarlo a 'charsPerFrame' caracteres por frame
+     * (0 = de golpe). Se puede llamar desde cualquier hilo.
+     */
+    public void replay(String text, int charsPerFrame) {
+        this.charsPerFrame = Math.max(0, charsPerFrame);
+        append(text);
+    }
+
+    /**
+     * Devuelve (y vacía) los tokens pendientes de pintar.
+     */
+    public String drain() {
+        return drain(0);
+    }
+
+    /**
+     * Devuelve (y quita) hasta 'max' caracteres pendientes, o todos si max es 0.
+     * No separa los dos char de un carácter fuera del BMP (emojis...).
+     */
+    private String drain(int max) {
+        synchronized (this) {
+            if (pending.length() == 0) return "";
+            int n = pending.length();
+            if (max > 0 && max < n) {
+                n = Character.isHighSurrogate(pending.charAt(max - 1)) ? Math.min(max + 1, n) : max;
+            }
+            String chunk = pending.substring(0, n);
+            pending.delete(0, n);
+            return chunk;
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        return pending.length() > 0;
+    }
+
+    /**
+     * Empieza a vaciar el buffer en cada frame. Se puede llamar desde cualquier hilo.
+     */
+    public void start() {
+        Platform.runLater(() -> {
+            if (timer != null) return;
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    flush(charsPerFrame);
+                }
+            };
+            timer.start();
+        });
+    }
+
+    /**
+     * Indica que no llegarán más tokens: el próximo frame pinta lo que quede y para el timer.
+     */
+    public void close() {
+        closed = true;
+        // Si nunca se llegó a arrancar el timer, pintamos lo pendiente directamente (todo)
+        Platform.runLater(() -> {
+            if (timer == null) flush(0);
+        });
+    }
+
+    /**
+     * Pinta lo pendiente (si hay algo), como mucho 'max' caracteres. Solo en el hilo de JavaFX.
+     */
+    private void flush(int max) {
+        boolean last = closed; // Se lee antes de vaciar: lo que llegue después lo recoge el siguiente frame
+        String chunk = drain(max);
+        if (!chunk.isEmpty()) {
+            shown.append(chunk);
+            renderer.accept(shown.toString());
+        }
+        if (last && !finished && !hasPending()) {
+            finished = true;
+            if (timer != null) timer.stop();
+            if (onFinished != null) onFinished.accept(shown.toString());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historial del chat guardado en SQLite (data/chat.sqlite).
+ *
+ * - Solo se añaden filas: un mensaje se escribe una vez, cuando ya es definitivo
+ *   (las respuestas del bot al terminar el stream).
+ * - Las escrituras no bloquean a quien las pide: append() deja el mensaje en una cola
+ *   y un hilo propio las escribe por lotes, en una sola transacción.
+ * - La lectura es por páginas desde el final ("keyset": WHERE seq < ?), así arrancar
+ *   cuesta lo mismo con 100 mensajes que con 100.000.
+ *
+ * Cada mensaje tiene un número de orden (seq) asignado al crearlo en la interfaz,
+ * no al guardarlo: una respuesta larga que termina tarde conserva su posición.
+ */
+public class TranscriptStore implements AutoCloseable {
+
+    /**
+     * Mensaje tal como está guardado.
+     */
+    public record Row(long seq, long conversation, boolean user, String text) {}
+
+    private static final int BATCH_SIZE = 256;
+    private static final Row END = new Row(-1, -1, false, ""); // Marca de cierre para el hilo de escritura
+
+    private final Connection writer;  // Solo la usa el hilo de escritura
+    private final Connection reader;  // Protegida por 'this'
+    private final BlockingQueue<Row> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+
+    private final long lastSeq;
+    private final long lastConversation;
+
+    private TranscriptStore(Path file) throws SQLException {
+        String url = "jdbc:sqlite:" + file;
+        writer = DriverManager.getConnection(url);
+        try (Statement st = writer.createStatement()) {
+            // WAL: las lecturas no esperan a las escrituras
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+            st.execute("CREATE TABLE IF NOT EXISTS messages ("
+                    + "seq INTEGER PRIMARY KEY, "
+                    + "conversation INTEGER NOT NULL, "
+                    + "is_user INTEGER NOT NULL, "
+                    + "text TEXT NOT NULL, "
+                    + "created INTEGER NOT NULL)");
+        }
+        reader = DriverManager.getConnection(url);
+
+        // seq es la clave primaria: MAX() no recorre la tabla
+        try (Statement st = reader.createStatement();
+             ResultSet rs = st.executeQuery("SELECT seq, conversation FROM messages ORDER BY seq DESC LIMIT 1")) {
+            lastSeq = rs.next() ? rs.getLong(1) : 0;
+            lastConversation = lastSeq > 0 ? rs.getLong(2) : 0;
+        }
+
+        writer.setAutoCommit(false);
+        writerThread = new Thread(this::writeLoop, "chat-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Abre (o crea) el historial.
+     */
+    public static TranscriptStore open(Path file) throws SQLException {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new SQLException("No s'ha pogut crear la carpeta de l'historial", e);
+        }
+        return new TranscriptStore(file);
+    }
+
+    /**
+     * Abre el historial según ChatConfig, o devuelve null si está desactivado o no se puede abrir.
+     */
+    public static TranscriptStore fromConfig() {
+        if (!ChatConfig.historyEnabled()) return null;
+        try {
+            return open(ChatConfig.historyFile());
+        } catch (SQLException e) {
+            System.err.println("No s'ha pogut obrir l'historial: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Último número de orden guardado (0 si el historial está vacío).
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Conversación del último mensaje guardado (0 si el historial está vacío).
+     */
+    public long getLastConversation() {
+        return lastConversation;
+    }
+
+    /**
+     * Añade un mensaje. No espera a que se escriba: se puede llamar desde el hilo de JavaFX.
+     */
+    public void append(long seq, long conversation, boolean user, String text) {
+        queue.add(new Row(seq, conversation, user, text));
+    }
+
+    /**
+     * Devuelve hasta 'limit' mensajes anteriores a 'beforeSeq', del más antiguo al más nuevo.
+     * Usa la clave primaria: no depende del tamaño del historial. No llamar desde el hilo de JavaFX.
+     */
+    public synchronized List<Row> loadBefore(long beforeSeq, int limit) throws SQLException {
+        List<Row> rows = new ArrayList<>(limit);
+        try (PreparedStatement ps = reader.prepareStatement(
+                "SELECT seq, conversation, is_user, text FROM messages WHERE seq < ? ORDER BY seq DESC LIMIT ?")) {
+            ps.setLong(1, beforeSeq);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Row(rs.getLong(1), rs.getLong(2), rs.getInt(3) != 0, rs.getString(4)));
+                }
+            }
+        }
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    /**
+     * Hilo de escritura: espera un mensaje y escribe de golpe todos los que haya en cola.
+     */
+    private void writeLoop() {
+        List<Row> batch = new ArrayList<>(BATCH_SIZE);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            running &= !batch.remove(END);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Row> batch) {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement ps = writer.prepareStatement(
+                "INSERT OR IGNORE INTO messages (seq, conversation, is_user, text, created) VALUES (?, ?, ?, ?, ?)")) {
+            for (Row row : batch) {
+                ps.setLong(1, row.seq());
+                ps.setLong(2, row.conversation());
+                ps.setInt(3, row.user() ? 1 : 0);
+                ps.setString(4, row.text());
+                ps.setLong(5, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            writer.commit();
+        } catch (SQLException e) {
+            System.err.println("No s'ha pogut desar l'historial: " + e.getMessage());
+            try {
+                writer.rollback();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Escribe lo que quede en cola y cierra la base de datos.
+     */
+    @Override
+    public void close() {
+        queue.add(END);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (SQLException ignored) {
+        }
+        synchronized (this) {
+            try {
+                reader.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
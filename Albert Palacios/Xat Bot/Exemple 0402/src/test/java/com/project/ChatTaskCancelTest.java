@@ -0,0 +1,164 @@
+package com.project;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ChatTask.cancel() debe cerrar la conexión con Ollama, tanto si aún no han
+ * llegado las cabeceras como a mitad del stream: el servidor tiene que ver la
+ * desconexión (y dejar de generar) mucho antes de terminar la respuesta.
+ */
+class ChatTaskCancelTest {
+
+    /**
+     * TokenSink sin JavaFX: guarda los tokens y avisa del primero.
+     */
+    static class RecordingSink extends TokenSink {
+
+        final CountDownLatch firstToken = new CountDownLatch(1);
+
+        RecordingSink() {
+            super(text -> { });
+        }
+
+        @Override
+        public void append(String token) {
+            super.append(token);
+            firstToken.countDown();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void close() {
+            drain();
+        }
+    }
+
+    /**
+     * Listener que avisa cuando la tarea termina.
+     */
+    static class FinishListener implements ChatTask.Listener {
+
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void onStateChanged(ChatTask task, ChatTask.State state) {
+            if (state != ChatTask.State.PENDING && state != ChatTask.State.RUNNING) finished.countDown();
+        }
+
+        @Override
+        public void onModelError(ChatTask task, String message) {
+        }
+
+        @Override
+        public void onFailure(ChatTask task, Exception e) {
+        }
+    }
+
+    private HttpServer server;
+    private StubOllamaServer stub;
+    private OllamaClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) client.close();
+        if (server != null) server.stop(0);
+        if (stub != null) stub.close();
+    }
+
+    private ChatTask startTask(URI baseUri, RecordingSink sink, FinishListener listener) {
+        client = new OllamaClient(baseUri, HttpClient.Version.HTTP_1_1, Duration.ofSeconds(2), Duration.ofSeconds(30), 2);
+        ChatTask task = new ChatTask(OllamaRouter.of(client), ChatRequest.text("stub", "Hola", null), null, sink, listener);
+        Thread.ofVirtual().start(task);
+        return task;
+    }
+
+    @Test
+    void cancelBeforeHeadersClosesTheConnection() throws Exception {
+        CountDownLatch requestArrived = new CountDownLatch(1);
+        CountDownLatch sendHeaders = new CountDownLatch(1);
+        CountDownLatch disconnected = new CountDownLatch(1);
+
+        // Servidor que no responde hasta que la tarea se ha cancelado; después escribe
+        // hasta que falla, que es cuando ve la conexión cerrada
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/generate", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                requestArrived.countDown();
+                sendHeaders.await(10, TimeUnit.SECONDS);
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                byte[] line = "{\"response\":\"x\",\"done\":false}\n".getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < 500; i++) {
+                    out.write(line);
+                    out.flush();
+                    Thread.sleep(10);
+                }
+            } catch (IOException e) {
+                disconnected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        RecordingSink sink = new RecordingSink();
+        FinishListener listener = new FinishListener();
+        ChatTask task = startTask(URI.create("http://127.0.0.1:" + server.getAddress().getPort()), sink, listener);
+
+        assertTrue(requestArrived.await(5, TimeUnit.SECONDS), "La petició no ha arribat al servidor");
+        task.cancel();
+        assertTrue(listener.finished.await(2, TimeUnit.SECONDS), "La tasca no acaba en cancel·lar-la");
+        assertEquals(ChatTask.State.CANCELLED, task.getState());
+
+        sendHeaders.countDown();
+        assertTrue(disconnected.await(3, TimeUnit.SECONDS), "La connexió segueix oberta després de cancel·lar");
+        assertEquals(1, sink.firstToken.getCount(), "No havia d'arribar cap token");
+    }
+
+    @Test
+    void cancelMidStreamClosesTheConnection() throws Exception {
+        // 25 tokens a 5 per segon: sense cancel·lar, la resposta duraria 5 segons
+        stub = new StubOllamaServer(0, null, 5, Duration.ZERO, Duration.ZERO, 0, 0);
+
+        RecordingSink sink = new RecordingSink();
+        FinishListener listener = new FinishListener();
+        ChatTask task = startTask(stub.baseUri(), sink, listener);
+
+        assertTrue(sink.firstToken.await(5, TimeUnit.SECONDS), "No ha arribat cap token");
+        assertEquals(1, stub.getInFlight());
+        assertTrue(task.cancel());
+        assertTrue(listener.finished.await(2, TimeUnit.SECONDS), "La tasca no acaba en cancel·lar-la");
+        assertEquals(ChatTask.State.CANCELLED, task.getState());
+        assertFalse(task.cancel(), "Una tasca acabada no es pot tornar a cancel·lar");
+
+        // El servidor veu la desconnexió en el següent token que intenta escriure
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (stub.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, stub.getInFlight(), "El servidor segueix enviant la resposta després de cancel·lar");
+        assertEquals(1, stub.getRequests(), "Una petició cancel·lada no s'ha de reintentar");
+    }
+}
@@ -0,0 +1,97 @@
+package com.project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El cortacircuitos solo se abre si Ollama no acepta conexiones, y la
+ * comprobación periódica no bloquea el hilo de los plazos.
+ */
+class CircuitBreakerTest {
+
+    private ScheduledExecutorService scheduler;
+    private StubOllamaServer stub;
+    private OllamaClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) scheduler.shutdownNow();
+        if (client != null) client.close();
+        if (stub != null) stub.close();
+    }
+
+    @Test
+    void probeDoesNotBlockTheScheduler() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        AtomicBoolean up = new AtomicBoolean();
+        CountDownLatch probed = new CountDownLatch(1);
+        // Mentre el servidor no respon, la comprovació queda pendent fins al seu timeout (1 s)
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(1), scheduler, () -> {
+            probed.countDown();
+            return up.get() ? CompletableFuture.completedFuture(true) : new CompletableFuture<>();
+        });
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(probed.await(3, TimeUnit.SECONDS), "No s'ha fet cap comprovació");
+
+        // Amb la comprovació sense resposta, el mateix fil ha de seguir atenent els terminis
+        long start = System.nanoTime();
+        scheduler.schedule(() -> { }, 10, TimeUnit.MILLISECONDS).get(2, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(300), "El scheduler està bloquejat");
+
+        up.set(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (breaker.getState() == CircuitBreaker.State.OPEN && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void busyServerDoesNotOpenTheCircuit() throws Exception {
+        // Sempre HTTP 503: el servidor és viu, els reintents no han d'obrir el circuit
+        stub = new StubOllamaServer(0, null, 1000, Duration.ZERO, Duration.ZERO, 1, 0);
+        ChatTask task = runTask(stub.baseUri());
+
+        assertEquals(ChatTask.State.FAILED, task.getState());
+        assertEquals(ChatConfig.retryAttempts(), stub.getRequests());
+        assertEquals(CircuitBreaker.State.CLOSED, client.breaker().getState());
+    }
+
+    @Test
+    void refusedConnectionsOpenTheCircuit() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort(); // Port lliure: les connexions es rebutgen
+        }
+        ChatTask task = runTask(URI.create("http://127.0.0.1:" + port));
+
+        assertEquals(ChatTask.State.FAILED, task.getState());
+        assertEquals(CircuitBreaker.State.OPEN, client.breaker().getState());
+    }
+
+    private ChatTask runTask(URI baseUri) throws InterruptedException {
+        client = new OllamaClient(baseUri, HttpClient.Version.HTTP_1_1, Duration.ofSeconds(2), Duration.ofSeconds(30), 2);
+        ChatTaskCancelTest.FinishListener listener = new ChatTaskCancelTest.FinishListener();
+        ChatTask task = new ChatTask(OllamaRouter.of(client), ChatRequest.text("stub", "Hola", null), null,
+                new ChatTaskCancelTest.RecordingSink(), listener);
+        Thread.ofVirtual().start(task);
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS), "La tasca no acaba");
+        return task;
+    }
+}
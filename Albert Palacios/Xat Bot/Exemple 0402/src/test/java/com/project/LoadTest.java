@@ -0,0 +1,204 @@
+package com.project;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga sin interfaz: lanza muchas peticiones contra StubOllamaServer
+ * con el mismo código que usa el chat (OllamaClient, ConversationManager,
+ * RequestScheduler, ChatTask, NdjsonStreamParser, ImageBodyPublisher...).
+ *
+ * Está en src/test (no va dentro de la aplicación). Se configura con propiedades del sistema, por ejemplo:
+ *   mvn test-compile exec:java -PrunMain -Dexec.classpathScope=test -Dexec.mainClass=com.project.LoadTest \
+ *       -Dload.requests=500 -Dload.concurrency=50
+ *
+ * - load.requests (200), load.concurrency (20), load.imageRatio (0.1)
+ * - load.tokensPerSecond (200), load.latencyMs (50), load.jitterMs (5)
+ * - load.failureRate (0), load.disconnectRate (0), load.script (NDJSON grabado, opcional)
+ *
+ * Informa del rendimiento, de los percentiles del primer token y de cuántas
+ * veces se habría pintado la interfaz (un frame con texto nuevo) frente a los tokens recibidos.
+ */
+public class LoadTest {
+
+    private static final String TEXT_MODEL = "stub-text";
+    private static final String IMAGE_MODEL = "stub-image";
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    /**
+     * TokenSink sin JavaFX: un temporizador a 60 Hz hace el papel del AnimationTimer
+     * y cuenta los frames que habrían tocado la interfaz.
+     */
+    private static class HeadlessSink extends TokenSink {
+
+        private final ScheduledExecutorService frames;
+        private final LongAdder uiEvents;
+        private ScheduledFuture<?> timer;
+
+        HeadlessSink(ScheduledExecutorService frames, LongAdder uiEvents) {
+            super(text -> { });
+            this.frames = frames;
+            this.uiEvents = uiEvents;
+        }
+
+        @Override
+        public synchronized void start() {
+            timer = frames.scheduleAtFixedRate(this::frame, FRAME_NANOS, FRAME_NANOS, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (timer != null) timer.cancel(false);
+            frame(); // Último frame con lo que quede
+        }
+
+        private void frame() {
+            if (!drain().isEmpty()) uiEvents.increment();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = Integer.getInteger("load.requests", 200);
+        int concurrency = Integer.getInteger("load.concurrency", 20);
+        double imageRatio = Double.parseDouble(System.getProperty("load.imageRatio", "0.1"));
+        String scriptFile = System.getProperty("load.script");
+
+        Path workDir = Files.createTempDirectory("chat-loadtest");
+        Path image = createTestImage(workDir.resolve("test.png"));
+        ImagePreprocessor preprocessor = new ImagePreprocessor(workDir.resolve("image-cache"), 336);
+
+        ScheduledExecutorService frames = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fake-fx-pulse");
+            t.setDaemon(true);
+            return t;
+        });
+        LongAdder uiEvents = new LongAdder();
+        LongAdder tokens = new LongAdder();
+        AtomicInteger modelErrors = new AtomicInteger();
+        ConcurrentLinkedQueue<ChatTask> finished = new ConcurrentLinkedQueue<>();
+
+        try (StubOllamaServer stub = new StubOllamaServer(0,
+                scriptFile != null ? StubOllamaServer.loadScript(Path.of(scriptFile)) : null,
+                Double.parseDouble(System.getProperty("load.tokensPerSecond", "200")),
+                Duration.ofMillis(Long.getLong("load.latencyMs", 50)),
+                Duration.ofMillis(Long.getLong("load.jitterMs", 5)),
+                Double.parseDouble(System.getProperty("load.failureRate", "0")),
+                Double.parseDouble(System.getProperty("load.disconnectRate", "0")));
+             OllamaClient client = new OllamaClient(stub.baseUri(), HttpClient.Version.HTTP_1_1,
+                     Duration.ofSeconds(5), Duration.ofSeconds(60), 4)) {
+
+            // El planificador del chat no debe ser el cuello de botella: aquí se mide todo lo demás
+            ConversationManager manager = new ConversationManager(OllamaRouter.of(client), null, (running, queued) -> { },
+                    executor -> new RequestScheduler(executor, concurrency, requests, model -> concurrency));
+            Semaphore slots = new Semaphore(concurrency);
+            CountDownLatch done = new CountDownLatch(requests);
+            Random random = new Random(42);
+
+            System.out.printf("Prova de càrrega: %d peticions, %d alhora, %.0f%% amb imatge%n",
+                    requests, concurrency, imageRatio * 100);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                slots.acquire(); // Bucle cerrado: nunca más de 'concurrency' peticiones a la vez
+                ChatRequest request = random.nextDouble() < imageRatio
+                        ? ChatRequest.image(IMAGE_MODEL, "Descriu la imatge " + i, image, preprocessor, null)
+                        : ChatRequest.text(TEXT_MODEL, "Pregunta " + i, null);
+                HeadlessSink sink = new HeadlessSink(frames, uiEvents);
+                sink.start();
+                manager.submit(request, sink, new ChatTask.Listener() {
+                    @Override
+                    public void onStateChanged(ChatTask task, ChatTask.State state) {
+                        if (state == ChatTask.State.PENDING || state == ChatTask.State.RUNNING) return;
+                        ChatMetrics.Sample sample = task.getMetrics();
+                        if (sample != null) tokens.add(sample.tokens());
+                        finished.add(task);
+                        slots.release();
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onModelError(ChatTask task, String message) {
+                        modelErrors.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onFailure(ChatTask task, Exception e) {
+                        // Se cuenta por el estado FAILED
+                    }
+                });
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            manager.shutdown();
+
+            report(finished, seconds, tokens.sum(), uiEvents.sum(), modelErrors.get(), stub);
+            System.out.println();
+            System.out.println(manager.getMetrics().summary());
+        } finally {
+            frames.shutdownNow();
+        }
+    }
+
+    private static void report(ConcurrentLinkedQueue<ChatTask> tasks, double seconds, long tokens, long uiEvents,
+                               int modelErrors, StubOllamaServer stub) {
+        List<Long> firstToken = new ArrayList<>();
+        int[] states = new int[ChatTask.State.values().length];
+        for (ChatTask task : tasks) {
+            states[task.getState().ordinal()]++;
+            ChatMetrics.Sample sample = task.getMetrics();
+            if (sample != null && sample.firstTokenNanos() >= 0) firstToken.add(sample.firstTokenNanos());
+        }
+        Collections.sort(firstToken);
+
+        System.out.println();
+        System.out.printf("Temps total:        %.2f s%n", seconds);
+        System.out.printf("Rendiment:          %.1f peticions/s · %.0f tokens/s%n", tasks.size() / seconds, tokens / seconds);
+        System.out.printf("Primer token (TTFT): p50 %.1f ms · p99 %.1f ms (%d mostres)%n",
+                percentileMillis(firstToken, 50), percentileMillis(firstToken, 99), firstToken.size());
+        for (ChatTask.State state : ChatTask.State.values()) {
+            if (states[state.ordinal()] > 0) System.out.printf("  %-10s %d%n", state, states[state.ordinal()]);
+        }
+        System.out.printf("Errors del model:   %d%n", modelErrors);
+        System.out.printf("Fil de la UI:       %d repintats per a %d tokens (%.1f tokens per repintat)%n",
+                uiEvents, tokens, uiEvents == 0 ? 0.0 : (double) tokens / uiEvents);
+        System.out.printf("Servidor:           %d peticions, màxim %d alhora, %.1f MB rebuts%n",
+                stub.getRequests(), stub.getMaxInFlight(), stub.getBodyBytes() / 1e6);
+    }
+
+    private static double percentileMillis(List<Long> sortedNanos, double p) {
+        if (sortedNanos.isEmpty()) return 0;
+        int index = (int) Math.ceil(sortedNanos.size() * p / 100.0) - 1;
+        return sortedNanos.get(Math.max(0, Math.min(index, sortedNanos.size() - 1))) / 1e6;
+    }
+
+    /**
+     * Imagen de 2048x1536 con ruido: grande, como una foto, para que el preprocesado cuente.
+     */
+    private static Path createTestImage(Path file) throws Exception {
+        BufferedImage img = new BufferedImage(2048, 1536, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, (x * 255 / img.getWidth()) << 16 | (y * 255 / img.getHeight()) << 8 | random.nextInt(64));
+            }
+        }
+        ImageIO.write(img, "png", file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,114 @@
+package com.project;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NdjsonStreamParser frente al camino anterior: leer cada línea como String
+ * y construir un JSONObject entero por línea.
+ *
+ * Las dos versiones reciben la misma respuesta de Ollama ya en memoria ('tokens'
+ * líneas más el objeto final con un "context" de 'contextSize' enteros) y
+ * extraen lo mismo: el texto de cada token, "done" y el context.
+ *
+ * Se ejecuta desde el classpath de test:
+ *   mvn test-compile exec:java -PrunMain -Dexec.classpathScope=test -Dexec.mainClass=com.project.NdjsonParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NdjsonParserBenchmark {
+
+    @Param({"500"})
+    public int tokens;
+
+    @Param({"4096"})
+    public int contextSize;
+
+    private byte[] stream;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        String[] words = {" Hola", ",", " com", " estàs", "?", " \"bé\"", "\n", " 🙂"};
+        for (int i = 0; i < tokens; i++) {
+            sb.append(new JSONObject().put("model", "gemma3:1b").put("created_at", "2024-05-01T10:00:00.000000Z")
+                    .put("response", words[i % words.length]).put("done", false)).append('\n');
+        }
+        JSONArray context = new JSONArray();
+        for (int i = 0; i < contextSize; i++) {
+            context.put(i * 31 % 250000);
+        }
+        sb.append(new JSONObject().put("model", "gemma3:1b").put("response", "").put("done", true)
+                .put("context", context).put("eval_count", tokens).put("eval_duration", 123456789L)).append('\n');
+        stream = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void incrementalParser(Blackhole bh) {
+        NdjsonStreamParser parser = new NdjsonStreamParser(new NdjsonStreamParser.Listener() {
+            @Override
+            public void onToken(String token) {
+                bh.consume(token);
+            }
+
+            @Override
+            public void onDone() {
+            }
+        });
+        // Trozos de 8 KB, como los lee ChatTask del socket
+        for (int off = 0; off < stream.length; off += 8192) {
+            parser.feed(stream, off, Math.min(8192, stream.length - off));
+        }
+        bh.consume(parser.isDone());
+        bh.consume(parser.getContext());
+    }
+
+    @Benchmark
+    public void jsonObjectPerLine(Blackhole bh) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            JSONObject json = new JSONObject(line);
+            bh.consume(json.optString("response", ""));
+            if (json.optBoolean("done", false)) {
+                JSONArray array = json.optJSONArray("context");
+                if (array != null) {
+                    int[] context = new int[array.length()];
+                    for (int i = 0; i < context.length; i++) {
+                        context[i] = array.getInt(i);
+                    }
+                    bh.consume(context);
+                }
+                bh.consume(true);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[]{NdjsonParserBenchmark.class.getSimpleName()});
+    }
+}
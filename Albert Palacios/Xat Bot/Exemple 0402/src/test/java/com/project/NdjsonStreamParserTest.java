@@ -0,0 +1,142 @@
+package com.project;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonStreamParserTest {
+
+    /**
+     * Guarda los eventos del parser.
+     */
+    private static class Events implements NdjsonStreamParser.Listener {
+        final List<String> tokens = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int done;
+
+        @Override
+        public void onToken(String token) {
+            tokens.add(token);
+        }
+
+        @Override
+        public void onDone() {
+            done++;
+        }
+
+        @Override
+        public void onError(String message) {
+            errors.add(message);
+        }
+    }
+
+    private static String line(String response, boolean done) {
+        return new JSONObject().put("model", "m").put("response", response).put("done", done) + "\n";
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pasa los bytes al parser en trozos de 'chunk' bytes (el último, lo que quede).
+     */
+    private static void feedInChunks(NdjsonStreamParser parser, byte[] bytes, int chunk) {
+        for (int off = 0; off < bytes.length; off += chunk) {
+            parser.feed(bytes, off, Math.min(chunk, bytes.length - off));
+        }
+    }
+
+    @Test
+    void parsesTokensAndFinalObject() {
+        Events events = new Events();
+        NdjsonStreamParser parser = new NdjsonStreamParser(events);
+        String last = new JSONObject().put("model", "m").put("response", "").put("done", true)
+                .put("context", new JSONArray(List.of(1, 2, 300000)))
+                .put("eval_count", 2).put("eval_duration", 1234567) + "\n";
+
+        parser.feed(ByteBuffer.wrap(utf8(line("Hola", false) + line(" món", false) + last)));
+
+        assertEquals(List.of("Hola", " món"), events.tokens);
+        assertEquals(1, events.done);
+        assertTrue(parser.isDone());
+        assertArrayEquals(new int[]{1, 2, 300000}, parser.getContext());
+        assertEquals(2, parser.getEvalCount());
+        assertEquals(1234567, parser.getEvalDuration());
+    }
+
+    @Test
+    void recordsSplitAcrossChunksAtEveryByte() {
+        // Incluye caracteres de 2, 3 y 4 bytes en UTF-8, que quedan partidos entre trozos
+        String stream = line("Adéu", false) + line(" 你好", false) + line(" 🙂", false) + line("", true);
+        byte[] bytes = utf8(stream);
+
+        for (int chunk = 1; chunk <= 7; chunk++) {
+            Events events = new Events();
+            NdjsonStreamParser parser = new NdjsonStreamParser(events);
+            feedInChunks(parser, bytes, chunk);
+
+            assertEquals(List.of("Adéu", " 你好", " 🙂"), events.tokens, "trossos de " + chunk + " bytes");
+            assertTrue(parser.isDone(), "trossos de " + chunk + " bytes");
+        }
+    }
+
+    @Test
+    void escapedNewlinesAndQuotesInsideStrings() {
+        // Escrito a mano para controlar exactamente los escapes
+        String stream = "{\"response\":\"línia 1\\nlínia 2\",\"done\":false}\n"
+                + "{\"response\":\"diu \\\"hola\\\" i \\\\ fi\",\"done\":false}\n"
+                + "{\"response\":\"\\u00e9\\t\\ud83d\\ude42\\/\",\"done\":false}\n"
+                + "{\"response\":\"{\\\"done\\\":true}\",\"done\":false}\n"
+                + "{\"response\":\"\",\"done\":true}\n";
+        byte[] bytes = utf8(stream);
+
+        for (int chunk : new int[]{1, 3, bytes.length}) {
+            Events events = new Events();
+            NdjsonStreamParser parser = new NdjsonStreamParser(events);
+            feedInChunks(parser, bytes, chunk);
+
+            assertEquals(List.of("línia 1\nlínia 2", "diu \"hola\" i \\ fi", "é\t🙂/", "{\"done\":true}"),
+                    events.tokens, "trossos de " + chunk + " bytes");
+            assertEquals(1, events.done);
+        }
+    }
+
+    @Test
+    void ignoresUnknownFieldsAndNestedValues() {
+        Events events = new Events();
+        NdjsonStreamParser parser = new NdjsonStreamParser(events);
+        String stream = "{\"model\":\"m\",\"extra\":{\"response\":\"no\",\"list\":[1,\"]\",{}]},"
+                + "\"response\":\"sí\",\"done\":false}\n"
+                + "{\"done\":true,\"response\":\"\"}\n";
+
+        parser.feed(ByteBuffer.wrap(utf8(stream)));
+
+        assertEquals(List.of("sí"), events.tokens);
+        assertTrue(parser.isDone());
+        assertNull(parser.getContext());
+    }
+
+    @Test
+    void reportsModelErrors() {
+        Events events = new Events();
+        NdjsonStreamParser parser = new NdjsonStreamParser(events);
+
+        parser.feed(ByteBuffer.wrap(utf8("{\"error\":\"model \\\"x\\\" not found\"}\n")));
+
+        assertEquals(List.of("model \"x\" not found"), events.errors);
+        assertTrue(events.tokens.isEmpty());
+        assertFalse(parser.isDone());
+    }
+}
@@ -0,0 +1,208 @@
+package com.project;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor /api/generate falso, para probar el chat sin Ollama ni GPU.
+ *
+ * Responde a cada petición con los tokens de un guion (uno por defecto, o los
+ * "response" de un stream NDJSON grabado de Ollama) al ritmo indicado:
+ *
+ * - latency: espera antes del primer token (carga del modelo, prompt...)
+ * - tokensPerSecond: ritmo de generación; jitter: retraso extra aleatorio por token
+ * - failureRate: probabilidad de responder HTTP 503 ("server busy", como Ollama con la cola llena)
+ * - disconnectRate: probabilidad de cortar la conexión a mitad de la respuesta
+ *
+ * Con "stream": false espera lo que tardaría en generar y envía un solo objeto,
+ * igual que Ollama. El objeto final incluye "context", "eval_count" y "eval_duration".
+ */
+public class StubOllamaServer implements AutoCloseable {
+
+    private static final List<String> DEFAULT_SCRIPT = List.of(
+            "Hola", "!", " Sóc", " un", " servidor", " de", " proves", ":", " no", " hi", " ha", " cap",
+            " model", " darrere", ",", " només", " un", " guió", " que", " es", " repeteix", " al", " ritme",
+            " configurat", ".");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<String> script;
+    private final double tokensPerSecond;
+    private final Duration latency;
+    private final Duration jitter;
+    private final double failureRate;
+    private final double disconnectRate;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+
+    public StubOllamaServer(int port, List<String> script, double tokensPerSecond, Duration latency,
+                            Duration jitter, double failureRate, double disconnectRate) throws IOException {
+        this.script = script == null || script.isEmpty() ? DEFAULT_SCRIPT : List.copyOf(script);
+        this.tokensPerSecond = tokensPerSecond;
+        this.latency = latency;
+        this.jitter = jitter;
+        this.failureRate = failureRate;
+        this.disconnectRate = disconnectRate;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor); // Un hilo virtual por petición: no limita la concurrencia
+        server.createContext("/api/generate", this::handle);
+        server.createContext("/api/version", exchange -> {
+            byte[] version = "{\"version\":\"stub\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, version.length);
+            try (exchange) {
+                exchange.getResponseBody().write(version);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Lee los tokens ("response") de un stream NDJSON grabado de Ollama.
+     */
+    public static List<String> loadScript(Path ndjson) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (String line : Files.readAllLines(ndjson, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            String token = new JSONObject(line).optString("response", "");
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * URL base, para pasarla a OllamaClient (http://127.0.0.1:puerto).
+     */
+    public URI baseUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Peticiones que se están atendiendo ahora (baja en cuanto el cliente cierra la conexión).
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Máximo de peticiones atendidas a la vez desde que arrancó.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Bytes recibidos en los bodies de las peticiones (las imágenes en Base64 incluidas).
+     */
+    public long getBodyBytes() {
+        return bodyBytes.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            bodyBytes.addAndGet(body.length);
+            JSONObject request = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            String model = request.optString("model", "stub");
+            boolean stream = request.optBoolean("stream", true);
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < failureRate) {
+                byte[] error = new JSONObject().put("error", "server busy, please try again.").toString()
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(503, error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+            // Corta la conexión después de un token al azar (-1 = no corta)
+            int disconnectAt = random.nextDouble() < disconnectRate ? random.nextInt(script.size()) : -1;
+
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            long start = System.nanoTime();
+            sleep(latency.toNanos());
+
+            StringBuilder full = stream ? null : new StringBuilder();
+            for (int i = 0; i < script.size(); i++) {
+                if (i == disconnectAt) {
+                    exchange.close(); // Sin "done": el cliente ve un stream cortado
+                    return;
+                }
+                sleep(tokenDelayNanos(random));
+                if (stream) {
+                    writeLine(out, new JSONObject().put("model", model).put("response", script.get(i)).put("done", false));
+                } else {
+                    full.append(script.get(i));
+                }
+            }
+
+            JSONObject last = new JSONObject()
+                    .put("model", model)
+                    .put("response", stream ? "" : full.toString())
+                    .put("done", true)
+                    .put("context", new JSONArray(List.of(1, 2, 3, (int) requests.get())))
+                    .put("eval_count", script.size())
+                    .put("eval_duration", System.nanoTime() - start);
+            writeLine(out, last);
+        } catch (IOException e) {
+            // El cliente ha cancelado: es lo esperado, no un error del servidor
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private long tokenDelayNanos(ThreadLocalRandom random) {
+        long base = tokensPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond) : 0;
+        long extra = jitter.isZero() ? 0 : random.nextLong(jitter.toNanos() + 1);
+        return base + extra;
+    }
+
+    private static void writeLine(OutputStream out, JSONObject json) throws IOException {
+        out.write((json + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush(); // Un chunk por línea, como Ollama
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}